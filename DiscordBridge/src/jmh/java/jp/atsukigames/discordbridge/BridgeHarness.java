@@ -0,0 +1,104 @@
+package jp.atsukigames.discordbridge;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// 計測用の組み立て。DiscordService と同じ部品（無害化・テンプレート・チャット束ね・送信プール・配信）を
+// 偽プロキシと偽 Discord に繋ぐ。JDA（Gateway）は使わない。
+public final class BridgeHarness implements AutoCloseable {
+    public static final class Options {
+        public int players = 100;
+        public int servers = 4;
+        public int webhooks = 1;
+        public boolean manualTicks = false;
+        public long chatBatchWindowMs = 250;
+        public int chatBatchMaxQueue = 500;
+        public int chatQueueMax = 2000;
+        public int discordLimit = 0;       // 0 で無制限
+        public long discordWindowMs = 2000;
+        public long discordLatencyMs = 0;
+        public long broadcastTickMs = 50;
+        public int broadcastChunkSize = 200;
+        public List<String> filterWords = List.of();
+    }
+
+    public final Logger logger = Logger.getLogger("DiscordBridge-harness");
+    public final Object plugin = new Object();
+    public final FakeProxy fakeProxy;
+    public final FakeDiscord fakeDiscord;
+    public final BridgeExecutors executors;
+    public final TextSanitizer sanitizer;
+    public final MessageTemplates templates;
+    public final WebhookSenderPool pool;
+    public final ChatBatcher chat;
+    public final BroadcastPipeline broadcast;
+    public final BridgeMetrics metrics = new BridgeMetrics();
+
+    public BridgeHarness(Options o) throws IOException {
+        logger.setLevel(Level.WARNING);
+        this.fakeProxy = new FakeProxy(o.players, o.servers, o.manualTicks);
+        this.fakeDiscord = new FakeDiscord(o.discordLimit, o.discordWindowMs, o.discordLatencyMs);
+        this.executors = new BridgeExecutors(new BridgeExecutors.Settings(), logger);
+
+        TextSanitizer.Settings ss = new TextSanitizer.Settings();
+        ss.filterWords.addAll(o.filterWords);
+        this.sanitizer = new TextSanitizer(ss);
+        this.templates = new MessageTemplates(new MessageTemplates.Settings());
+
+        Map<WebhookSenderPool.Lane, Integer> caps = new EnumMap<>(WebhookSenderPool.Lane.class);
+        for (WebhookSenderPool.Lane lane : WebhookSenderPool.Lane.values()) caps.put(lane, o.chatQueueMax);
+        this.pool = new WebhookSenderPool(fakeDiscord.webhookUrls(o.webhooks), caps,
+                new WebhookTransport.Http(executors.io()), executors.webhook(), logger, null);
+        this.chat = new ChatBatcher(fakeProxy.proxy(), plugin,
+                (username, avatarUrl, content) -> pool.send(WebhookSenderPool.Lane.CHAT,
+                        new WebhookPayload(username, avatarUrl, content, List.of())),
+                o.chatBatchWindowMs, o.chatBatchMaxQueue, ChatBatcher.OverflowPolicy.MERGE);
+        this.broadcast = new BroadcastPipeline(fakeProxy.proxy(), plugin, executors.format(),
+                o.broadcastTickMs, 1000, 50, o.broadcastChunkSize);
+        broadcast.start();
+
+        metrics.register(out -> {
+            out.counter("harness_discord_requests_total", "Requests seen by the fake Discord", fakeDiscord.requests());
+            out.counter("harness_discord_429_total", "429 answers from the fake Discord", fakeDiscord.rateLimited());
+            out.counter("harness_messages_delivered_total", "Component messages received by fake players", fakeProxy.messagesDelivered());
+            out.counter("discordbridge_webhook_sent_total", "Webhook executions accepted", pool.sent());
+            out.counter("discordbridge_webhook_rate_limited_total", "429 responses", pool.rateLimited());
+            out.counter("discordbridge_chat_batch_dropped_total", "Chat lines dropped", chat.dropped());
+            out.gauge("discordbridge_webhook_queue_depth", "Messages waiting", pool.queueDepth());
+            out.latency("discordbridge_webhook_request_seconds", "Webhook HTTP round trip", pool.requestLatency());
+            out.latency("discordbridge_webhook_delivery_seconds", "Enqueue to delivery (chat lane)",
+                    pool.laneStats(WebhookSenderPool.Lane.CHAT).latency());
+            out.latency("discordbridge_chat_batch_flush_seconds", "Oldest line age at flush", chat.flushLatency());
+            out.latency("discordbridge_broadcast_fanout_seconds", "Time to deliver one tick", broadcast.fanoutLatency());
+        });
+    }
+
+    // DiscordService.onChat -> sendChatAsWebhook と同じ処理
+    public void onChat(String server, String player, String message) {
+        String safe = sanitizer.toDiscord(message);
+        chat.submit(templates.chatUsername.render(server, player, safe), safe);
+    }
+
+    // DiscordService.onMessageReceived の配信部分と同じ処理
+    public void onDiscordMessage(String display, String content) {
+        broadcast.submit(sanitizer.toGame(display), sanitizer.toGame(content), null);
+    }
+
+    @Override
+    public void close() {
+        broadcast.stop();
+        chat.flush();
+        try {
+            pool.awaitDrain(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executors.shutdown();
+        fakeDiscord.close();
+        fakeProxy.close();
+    }
+}
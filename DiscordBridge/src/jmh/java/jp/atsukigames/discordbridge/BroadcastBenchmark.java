@@ -0,0 +1,62 @@
+package jp.atsukigames.discordbridge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Discord -> ゲーム内配信の 1 tick 分の費用をプレイヤー数ごとに測る。
+// tick は手動で進め、全プレイヤーへの sendMessage が終わる（fanouts が進む）まで待つ。
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    public int players;
+
+    @Param({"1", "5"})
+    public int messagesPerTick;
+
+    private BridgeHarness harness;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BridgeHarness.Options o = new BridgeHarness.Options();
+        o.players = players;
+        o.manualTicks = true;
+        harness = new BridgeHarness(o);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+    }
+
+    @Benchmark
+    public long tick() {
+        for (int i = 0; i < messagesPerTick; i++) harness.onDiscordMessage("someone", "hello from discord " + i);
+        long before = harness.broadcast.fanouts();
+        harness.fakeProxy.tick();
+        while (harness.broadcast.fanouts() == before) {
+            LockSupport.parkNanos(1_000);
+            harness.fakeProxy.tick(); // 前回の tick がまだ後片付け中なら取りこぼすので打ち直す
+        }
+        return harness.fakeProxy.messagesDelivered();
+    }
+}
@@ -0,0 +1,76 @@
+package jp.atsukigames.discordbridge;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// ゲーム内チャット -> Webhook の端から端まで（無害化・テンプレート・束ね・送信プール・HTTP）。
+// 1 回の呼び出しで LINES 行を流し、偽 Discord に届き切るまで待つ。結果は 1 行あたりの時間。
+// windowMs=0 は束ね無効（1 行 1 リクエスト）との比較用。
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatPathBenchmark {
+    static final int LINES = 100;
+
+    @Param({"0", "250"})
+    public long windowMs;
+
+    @Param({"1", "4"})
+    public int webhooks;
+
+    private BridgeHarness harness;
+    private final String[] players = new String[16];
+
+    // 1 行あたりの Discord リクエスト数
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Requests {
+        public long discordRequests;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BridgeHarness.Options o = new BridgeHarness.Options();
+        o.chatBatchWindowMs = windowMs;
+        o.webhooks = webhooks;
+        o.chatQueueMax = LINES * 2;
+        harness = new BridgeHarness(o);
+        for (int i = 0; i < players.length; i++) players[i] = "player" + i;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        harness.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void chatToWebhook(Requests r) throws InterruptedException {
+        long before = harness.fakeDiscord.requests();
+        for (int i = 0; i < LINES; i++) {
+            harness.onChat("lobby", players[i & 15], "こんにちは **みんな** @everyone " + i);
+        }
+        harness.chat.flush(); // ウィンドウ満了を待たずに押し出す
+        harness.pool.awaitDrain(10_000);
+        r.discordRequests += harness.fakeDiscord.requests() - before;
+    }
+}
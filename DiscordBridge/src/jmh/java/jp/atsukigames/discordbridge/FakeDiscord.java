@@ -0,0 +1,127 @@
+package jp.atsukigames.discordbridge;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Discord Webhook API の代役（127.0.0.1 の空きポート）。
+// POST /api/webhooks/<id>/<token> と POST /api/v10/channels/<id>/messages（ボット送信）に 204 を返し、
+// X-RateLimit-* を本物と同じ形で付ける。
+// limit 件 / windowMs を超えたら 429 と retry_after を返すので、送信プールの先回り待ちも含めて計測できる。
+public final class FakeDiscord implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4, r -> {
+        Thread t = new Thread(r, "FakeDiscord-http");
+        t.setDaemon(true);
+        return t;
+    });
+    private final int limit;
+    private final long windowMs;
+    private final long latencyMs;
+
+    // 以下 this で保護
+    private int remaining;
+    private long resetAtMs;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    // limit <= 0 で無制限。latencyMs は応答までの擬似的な往復時間
+    public FakeDiscord(int limit, long windowMs, long latencyMs) throws IOException {
+        this.limit = limit;
+        this.windowMs = Math.max(1, windowMs);
+        this.latencyMs = latencyMs;
+        this.remaining = limit;
+        this.resetAtMs = System.currentTimeMillis() + this.windowMs;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/webhooks/", this::handle);
+        server.createContext("/api/v10/channels/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String webhookUrl(int n) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/webhooks/" + (1000 + n) + "/token" + n;
+    }
+
+    public String channelMessagesUrl(String channelId) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v10/channels/" + channelId + "/messages";
+    }
+
+    public List<String> webhookUrls(int count) {
+        List<String> urls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) urls.add(webhookUrl(i));
+        return urls;
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            bytes.addAndGet(in.readAllBytes().length);
+        }
+        requests.incrementAndGet();
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        int status;
+        int left;
+        long resetAfterMs;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (now >= resetAtMs) {
+                remaining = limit;
+                resetAtMs = now + windowMs;
+            }
+            resetAfterMs = resetAtMs - now;
+            if (limit <= 0) {
+                status = 204;
+                left = Integer.MAX_VALUE;
+            } else if (remaining > 0) {
+                status = 204;
+                left = --remaining;
+            } else {
+                status = 429;
+                left = 0;
+            }
+        }
+        String resetAfter = String.format(Locale.ROOT, "%.3f", resetAfterMs / 1000.0);
+        ex.getResponseHeaders().set("X-RateLimit-Bucket", "fake");
+        ex.getResponseHeaders().set("X-RateLimit-Limit", Integer.toString(Math.max(limit, 1)));
+        ex.getResponseHeaders().set("X-RateLimit-Remaining", Integer.toString(left));
+        ex.getResponseHeaders().set("X-RateLimit-Reset-After", resetAfter);
+        if (status == 429) {
+            rateLimited.incrementAndGet();
+            byte[] body = ("{\"message\":\"You are being rate limited.\",\"retry_after\":" + resetAfter + ",\"global\":false}").getBytes();
+            ex.getResponseHeaders().set("Retry-After", resetAfter);
+            ex.getResponseHeaders().set("Content-Type", "application/json");
+            ex.sendResponseHeaders(429, body.length);
+            ex.getResponseBody().write(body);
+        } else {
+            ex.sendResponseHeaders(204, -1);
+        }
+        ex.close();
+    }
+
+    public long requests() { return requests.get(); }
+    public long rateLimited() { return rateLimited.get(); }
+    public long bytes() { return bytes.get(); }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,239 @@
+package jp.atsukigames.discordbridge;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.api.scheduler.Scheduler;
+import net.kyori.adventure.text.Component;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 計測用の偽プロキシ。Velocity の ProxyServer / Player / RegisteredServer を動的プロキシで作り、
+// 使う所だけ振る舞いを持たせる（それ以外は既定値を返す）。
+// manualTicks のときは繰り返しタスクを自動では回さず、tick() で 1 回ずつ進める（ベンチマーク用）。
+public final class FakeProxy implements AutoCloseable {
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread t = new Thread(r, "FakeProxy-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+    private final boolean manualTicks;
+    private final List<Runnable> repeating = new CopyOnWriteArrayList<>();
+    private final Map<String, RegisteredServer> servers = new LinkedHashMap<>();
+    private final List<Player> players = new ArrayList<>();
+    private final Set<String> down = ConcurrentHashMap.newKeySet();
+    private final Set<String> unregistered = ConcurrentHashMap.newKeySet();
+    private final ProxyServer proxy;
+
+    private volatile long pingDelayMs;
+    private final AtomicLong messagesDelivered = new AtomicLong();
+    private final AtomicLong pings = new AtomicLong();
+
+    public FakeProxy(int playerCount, int serverCount, boolean manualTicks) {
+        this.manualTicks = manualTicks;
+        for (int i = 0; i < serverCount; i++) {
+            String name = "server" + i;
+            servers.put(name, server(new ServerInfo(name, InetSocketAddress.createUnresolved("127.0.0.1", 25566 + i))));
+        }
+        List<RegisteredServer> list = new ArrayList<>(servers.values());
+        for (int i = 0; i < playerCount; i++) {
+            RegisteredServer rs = list.isEmpty() ? null : list.get(i % list.size());
+            players.add(player("player" + i, rs));
+        }
+        Scheduler sched = fake(Scheduler.class, (m, args) ->
+                "buildTask".equals(m.getName()) ? new TaskBuilder((Runnable) args[1]).proxy : null);
+        this.proxy = fake(ProxyServer.class, (m, args) -> {
+            switch (m.getName()) {
+                case "getAllPlayers": return Collections.unmodifiableList(players);
+                case "getPlayerCount": return players.size();
+                case "getAllServers": return servers.values().stream()
+                        .filter(rs -> !unregistered.contains(rs.getServerInfo().getName())).toList();
+                case "getServer": return unregistered.contains((String) args[0])
+                        ? Optional.empty() : Optional.ofNullable(servers.get((String) args[0]));
+                case "getScheduler": return sched;
+                default: return null;
+            }
+        });
+    }
+
+    public ProxyServer proxy() {
+        return proxy;
+    }
+
+    public List<Player> players() {
+        return Collections.unmodifiableList(players);
+    }
+
+    public List<String> serverNames() {
+        return new ArrayList<>(servers.keySet());
+    }
+
+    // バックエンドの応答時間（ping）
+    public void setPingDelayMs(long ms) {
+        this.pingDelayMs = ms;
+    }
+
+    public void setDown(String server, boolean isDown) {
+        if (isDown) down.add(server);
+        else down.remove(server);
+    }
+
+    // 登録解除（getServer / getAllServers から消える）と再登録
+    public void setRegistered(String server, boolean registered) {
+        if (registered) unregistered.remove(server);
+        else unregistered.add(server);
+    }
+
+    // manualTicks のとき、登録済みの繰り返しタスクを 1 回ずつ実行する
+    public void tick() {
+        for (Runnable r : repeating) r.run();
+    }
+
+    public long messagesDelivered() { return messagesDelivered.get(); }
+    public long pings() { return pings.get(); }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private Player player(String name, RegisteredServer rs) {
+        UUID id = UUID.nameUUIDFromBytes(name.getBytes());
+        ServerConnection conn = (rs == null) ? null : fake(ServerConnection.class, (m, args) -> {
+            switch (m.getName()) {
+                case "getServerInfo": return rs.getServerInfo();
+                case "getServer": return rs;
+                default: return null;
+            }
+        });
+        return fake(Player.class, (m, args) -> {
+            switch (m.getName()) {
+                case "getUsername": return name;
+                case "getUniqueId": return id;
+                case "getCurrentServer": return Optional.ofNullable(conn);
+                case "sendMessage":
+                    if (args != null && args.length > 0 && args[args.length - 1] instanceof Component) messagesDelivered.incrementAndGet();
+                    return null;
+                default: return null;
+            }
+        });
+    }
+
+    private RegisteredServer server(ServerInfo info) {
+        return fake(RegisteredServer.class, (m, args) -> {
+            switch (m.getName()) {
+                case "getServerInfo": return info;
+                case "getPlayersConnected": return List.of();
+                case "ping": return ping(info.getName());
+                default: return null;
+            }
+        });
+    }
+
+    private CompletableFuture<ServerPing> ping(String name) {
+        pings.incrementAndGet();
+        CompletableFuture<ServerPing> f = new CompletableFuture<>();
+        Runnable answer = () -> {
+            if (down.contains(name)) f.completeExceptionally(new java.io.IOException("connection refused"));
+            else f.complete(new ServerPing(new ServerPing.Version(763, "1.20.1"), null, Component.empty(), null));
+        };
+        long delay = pingDelayMs;
+        if (delay <= 0) answer.run();
+        else scheduler.schedule(answer, delay, TimeUnit.MILLISECONDS);
+        return f;
+    }
+
+    // Scheduler.TaskBuilder の代役
+    private final class TaskBuilder {
+        final Runnable task;
+        Object proxy;
+        long delayMs;
+        long repeatMs;
+
+        TaskBuilder(Runnable task) {
+            this.task = task;
+            this.proxy = fake(Scheduler.TaskBuilder.class, (m, args) -> {
+                switch (m.getName()) {
+                    case "delay": delayMs = millis(args); return this.proxy;
+                    case "repeat": repeatMs = millis(args); return this.proxy;
+                    case "clearDelay": delayMs = 0; return this.proxy;
+                    case "clearRepeat": repeatMs = 0; return this.proxy;
+                    case "schedule": return schedule();
+                    default: return this.proxy;
+                }
+            });
+        }
+
+        private ScheduledTask schedule() {
+            if (repeatMs > 0 && manualTicks) {
+                repeating.add(task);
+                return fake(ScheduledTask.class, (m, args) -> {
+                    if ("cancel".equals(m.getName())) repeating.remove(task);
+                    return null;
+                });
+            }
+            ScheduledFuture<?> f = (repeatMs > 0)
+                    ? scheduler.scheduleAtFixedRate(task, delayMs, repeatMs, TimeUnit.MILLISECONDS)
+                    : scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+            return fake(ScheduledTask.class, (m, args) -> {
+                if ("cancel".equals(m.getName())) f.cancel(false);
+                return null;
+            });
+        }
+    }
+
+    private static long millis(Object[] args) {
+        if (args[0] instanceof Duration) return ((Duration) args[0]).toMillis();
+        return ((TimeUnit) args[1]).toMillis((Long) args[0]);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object invoke(Method m, Object[] args);
+    }
+
+    // 振る舞いを持たないメソッドは型の既定値（参照型は null、Optional は空）を返す
+    @SuppressWarnings("unchecked")
+    static <T> T fake(Class<T> type, Handler h) {
+        return (T) Proxy.newProxyInstance(FakeProxy.class.getClassLoader(), new Class<?>[]{type}, (self, m, args) -> {
+            switch (m.getName()) {
+                case "hashCode": if (m.getParameterCount() == 0) return System.identityHashCode(self); break;
+                case "equals": if (m.getParameterCount() == 1) return self == args[0]; break;
+                case "toString": if (m.getParameterCount() == 0) return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(self)); break;
+                default: break;
+            }
+            Object r = h.invoke(m, args);
+            if (r != null) return r;
+            Class<?> rt = m.getReturnType();
+            if (rt == Optional.class) return Optional.empty();
+            if (rt == boolean.class) return false;
+            if (rt == int.class) return 0;
+            if (rt == long.class) return 0L;
+            if (rt == double.class) return 0.0;
+            return null;
+        });
+    }
+}
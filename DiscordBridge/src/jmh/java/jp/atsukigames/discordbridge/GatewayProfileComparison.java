@@ -0,0 +1,78 @@
+package jp.atsukigames.discordbridge;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// LIGHT と DEFAULT のゲートウェイ設定で実際に Discord へ接続し、準備完了までの時間と接続後のヒープ増分を比べる。
+// 本物のボットトークンが要るので、オフラインの計測（jmh / simulate）とは分けている。
+// 接続の設定は DiscordService.newJdaBuilder をそのまま使う。トークンは環境変数 DISCORD_BOT_TOKEN から読む。
+//   ./gradlew compareGateway --args="settleSec=30 rounds=3"
+//   ./gradlew compareGateway --args="profile=LIGHT"     片方だけ（別 JVM で測りたいとき）
+public final class GatewayProfileComparison {
+    private record Result(long readyMs, long heapBytes, int guilds, long members, long users) {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> a = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) a.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        String token = System.getenv("DISCORD_BOT_TOKEN");
+        if (token == null || token.isBlank()) {
+            System.err.println("DISCORD_BOT_TOKEN is not set");
+            System.exit(2);
+        }
+        int settleSec = Integer.parseInt(a.getOrDefault("settleSec", "20")); // 準備完了後、キャッシュが埋まるのを待つ
+        int rounds = Integer.parseInt(a.getOrDefault("rounds", "3"));
+        String only = a.get("profile");
+        List<DiscordService.GatewayProfile> profiles = (only != null)
+                ? List.of(DiscordService.GatewayProfile.valueOf(only.toUpperCase(Locale.ROOT)))
+                : List.of(DiscordService.GatewayProfile.LIGHT, DiscordService.GatewayProfile.DEFAULT);
+
+        System.out.printf(Locale.ROOT, "%-8s %5s %10s %10s %7s %9s %9s%n", "profile", "round", "ready(ms)", "heap(MiB)", "guilds", "members", "users");
+        for (int round = 1; round <= rounds; round++) {
+            for (DiscordService.GatewayProfile profile : profiles) {
+                Result r = measure(token, profile, settleSec);
+                System.out.printf(Locale.ROOT, "%-8s %5d %10d %10.1f %7d %9d %9d%n", profile, round, r.readyMs(),
+                        r.heapBytes() / 1048576.0, r.guilds(), r.members(), r.users());
+            }
+        }
+    }
+
+    private static Result measure(String token, DiscordService.GatewayProfile profile, int settleSec) throws Exception {
+        DiscordService.Config c = new DiscordService.Config();
+        c.botToken = token;
+        c.gatewayProfile = profile;
+        long heapBefore = usedHeapAfterGc();
+        long started = System.nanoTime();
+        JDA jda = DiscordService.newJdaBuilder(c, channelId -> false, new LongAdder()).build();
+        try {
+            jda.awaitReady();
+            long readyMs = (System.nanoTime() - started) / 1_000_000;
+            Thread.sleep(settleSec * 1000L);
+            long heap = usedHeapAfterGc() - heapBefore;
+            long members = 0;
+            for (Guild g : jda.getGuilds()) members += g.getMemberCache().size();
+            return new Result(readyMs, heap, jda.getGuilds().size(), members, jda.getUserCache().size());
+        } finally {
+            jda.shutdownNow();
+            jda.awaitShutdown(Duration.ofSeconds(10));
+        }
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,68 @@
+package jp.atsukigames.discordbridge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// 死活監視の費用をバックエンド数ごとに測る。
+//   pingRound      : 全バックエンドへの ping 1 巡（結果の状態機械への反映まで）
+//   passiveSignals : プレイヤー接続ごとに呼ばれる受動シグナル（全バックエンド 1 回ずつ）
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HealthCheckBenchmark {
+    @Param({"1", "10", "50", "200"})
+    public int backends;
+
+    private FakeProxy fakeProxy;
+    private BridgeExecutors executors;
+    private HealthMonitor monitor;
+    private List<String> names;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Logger logger = Logger.getLogger("DiscordBridge-bench");
+        fakeProxy = new FakeProxy(0, backends, true);
+        executors = new BridgeExecutors(new BridgeExecutors.Settings(), logger);
+        monitor = new HealthMonitor(fakeProxy.proxy(), executors.health(), new HealthMonitor.Settings(), Map.of(),
+                (server, isUp) -> {});
+        names = fakeProxy.serverNames();
+        // 2 台に 1 台は落ちている想定（失敗側の分岐も通す）
+        for (int i = 0; i < names.size(); i += 2) fakeProxy.setDown(names.get(i), true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        monitor.stop();
+        executors.shutdown();
+        fakeProxy.close();
+    }
+
+    @Benchmark
+    public void pingRound() {
+        monitor.warmup().join();
+    }
+
+    @Benchmark
+    public void passiveSignals() {
+        for (String n : names) monitor.onPassiveSuccess(n);
+    }
+}
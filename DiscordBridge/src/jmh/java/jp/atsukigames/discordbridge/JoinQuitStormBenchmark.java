@@ -0,0 +1,79 @@
+package jp.atsukigames.discordbridge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 参加・退出の嵐（プロキシ再起動直後を想定）1,000 件あたりの処理時間と Discord 呼び出し回数。
+// windowMs=0 は集約無効（1 件 1 通）との比較用。呼び出し回数は終了時に標準出力へ出す。
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JoinQuitStormBenchmark {
+    static final int EVENTS = 1000;
+
+    @Param({"0", "3000"})
+    public long windowMs;
+
+    @Param({"5"})
+    public int stormThreshold;
+
+    private FakeProxy fakeProxy;
+    private JoinQuitAggregator aggregator;
+    private final AtomicLong discordCalls = new AtomicLong();
+    private final String[] names = new String[EVENTS];
+    private long invocations;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fakeProxy = new FakeProxy(0, 0, true);
+        aggregator = new JoinQuitAggregator(fakeProxy.proxy(), new Object(), new JoinQuitAggregator.Sink() {
+            @Override
+            public void single(String player, boolean isJoin) {
+                discordCalls.incrementAndGet();
+            }
+
+            @Override
+            public void summary(List<String> joined, List<String> left) {
+                discordCalls.incrementAndGet();
+            }
+        }, windowMs, stormThreshold);
+        for (int i = 0; i < EVENTS; i++) names[i] = "player" + i;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        aggregator.flush();
+        System.out.printf("%nwindowMs=%d: %.1f Discord calls per %d events (%d cancelled)%n",
+                windowMs, (double) discordCalls.get() / Math.max(1, invocations), EVENTS, aggregator.cancelled());
+        fakeProxy.close();
+    }
+
+    // 600 人が参加し、そのうち 200 人がすぐ抜け、さらに 200 人が抜ける
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void storm() {
+        for (int i = 0; i < 600; i++) aggregator.submit(names[i], true);
+        for (int i = 0; i < 400; i++) aggregator.submit(names[i], false);
+        aggregator.flush();
+        invocations++;
+    }
+}
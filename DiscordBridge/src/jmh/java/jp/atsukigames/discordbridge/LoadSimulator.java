@@ -0,0 +1,91 @@
+package jp.atsukigames.discordbridge;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 負荷シミュレータ。偽プロキシ（プレイヤー・バックエンド）と偽 Discord を立て、チャットと Discord 側の発言を
+// 指定レートで流し続けて、終了時に計測値の一覧を出す。リリース間の比較用。
+//   ./gradlew simulate --args="players=500 servers=8 chatPerSec=50 discordPerSec=5 seconds=60"
+public final class LoadSimulator {
+    public static void main(String[] args) throws Exception {
+        Map<String, String> a = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) a.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        BridgeHarness.Options o = new BridgeHarness.Options();
+        o.players = intArg(a, "players", 200);
+        o.servers = intArg(a, "servers", 4);
+        o.webhooks = intArg(a, "webhooks", 1);
+        o.chatBatchWindowMs = intArg(a, "windowMs", 250);
+        o.discordLimit = intArg(a, "discordLimit", 5); // Discord の Webhook は概ね 5 件 / 2 秒
+        o.discordWindowMs = intArg(a, "discordWindowMs", 2000);
+        o.discordLatencyMs = intArg(a, "discordLatencyMs", 40);
+        int chatPerSec = intArg(a, "chatPerSec", 20);
+        int discordPerSec = intArg(a, "discordPerSec", 2);
+        int seconds = intArg(a, "seconds", 30);
+        int downServers = intArg(a, "downServers", 1);
+
+        System.out.printf(Locale.ROOT, "players=%d servers=%d webhooks=%d windowMs=%d chatPerSec=%d discordPerSec=%d seconds=%d%n",
+                o.players, o.servers, o.webhooks, o.chatBatchWindowMs, chatPerSec, discordPerSec, seconds);
+
+        ScheduledExecutorService load = Executors.newScheduledThreadPool(2);
+        try (BridgeHarness h = new BridgeHarness(o)) {
+            h.fakeProxy.setPingDelayMs(5);
+            for (int i = 0; i < Math.min(downServers, o.servers); i++) h.fakeProxy.setDown("server" + i, true);
+
+            HealthMonitor.Settings hs = new HealthMonitor.Settings();
+            hs.intervalSec = 1.0;
+            hs.maxIntervalSec = 5.0;
+            HealthMonitor health = new HealthMonitor(h.fakeProxy.proxy(), h.executors.health(), hs, Map.of(), (s, up) -> {});
+            health.warmup().join();
+            health.start();
+            h.metrics.register(out -> {
+                out.counter("discordbridge_health_probes_total", "Active pings sent", health.probesSent());
+                out.counter("discordbridge_health_probes_failed_total", "Active pings that failed", health.probesFailed());
+            });
+
+            AtomicLong chatLines = new AtomicLong();
+            long started = System.nanoTime();
+            if (chatPerSec > 0) {
+                load.scheduleAtFixedRate(() -> {
+                    chatLines.incrementAndGet();
+                    int p = ThreadLocalRandom.current().nextInt(o.players);
+                    h.onChat("server" + (p % Math.max(1, o.servers)), "player" + p, "load test message #" + System.nanoTime());
+                }, 0, 1_000_000 / chatPerSec, TimeUnit.MICROSECONDS);
+            }
+            if (discordPerSec > 0) {
+                load.scheduleAtFixedRate(() -> h.onDiscordMessage("tester", "message from discord"),
+                        0, 1_000_000 / discordPerSec, TimeUnit.MICROSECONDS);
+            }
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+            load.shutdownNow();
+            health.stop();
+
+            double elapsed = (System.nanoTime() - started) / 1e9;
+            h.chat.flush();
+            boolean drained = h.pool.awaitDrain(30_000);
+            System.out.printf(Locale.ROOT, "%nelapsed %.1fs, webhook queue %s%n", elapsed, drained ? "drained" : "NOT drained");
+            System.out.printf(Locale.ROOT, "chat lines -> Discord requests: %d -> %d (%.2f lines/request)%n",
+                    chatLines.get(), h.fakeDiscord.requests(),
+                    (double) chatLines.get() / Math.max(1, h.fakeDiscord.requests()));
+            System.out.printf(Locale.ROOT, "in-game deliveries: %d (%.0f/s)%n",
+                    h.fakeProxy.messagesDelivered(), h.fakeProxy.messagesDelivered() / elapsed);
+            System.out.println();
+            h.metrics.summary().forEach(System.out::println);
+        } finally {
+            load.shutdownNow();
+        }
+    }
+
+    private static int intArg(Map<String, String> a, String key, int def) {
+        String v = a.get(key);
+        return (v == null) ? def : Integer.parseInt(v);
+    }
+}
@@ -0,0 +1,100 @@
+package jp.atsukigames.discordbridge;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// ボット経由の送信（Webhook の無いルート）。偽 Discord の /channels/<id>/messages へ送る。
+// perLine は 1 行 1 リクエストを順に送る従来の形、pipelined は PlainSender（応答待ちの間に溜まった行をまとめる）。
+// 1 回の呼び出しで LINES 行を流し、届き切るまで待つ。結果は 1 行あたりの時間。
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlainSenderBenchmark {
+    static final int LINES = 100;
+
+    @Param({"0", "40"})
+    public long latencyMs;
+
+    @Param({"1", "4"})
+    public int channels;
+
+    private FakeDiscord fakeDiscord;
+    private BridgeExecutors executors;
+    private WebhookTransport http;
+    private PlainSender sender;
+    private String[] channelIds;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Requests {
+        public long discordRequests;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Logger logger = Logger.getLogger("DiscordBridge-harness");
+        logger.setLevel(java.util.logging.Level.WARNING);
+        fakeDiscord = new FakeDiscord(0, 2000, latencyMs);
+        executors = new BridgeExecutors(new BridgeExecutors.Settings(), logger);
+        http = new WebhookTransport.Http(executors.io());
+        sender = new PlainSender(this::post, executors.io(), LINES * 2, logger);
+        channelIds = new String[channels];
+        for (int i = 0; i < channels; i++) channelIds[i] = Long.toString(100_000_000_000_000_000L + i);
+    }
+
+    private CompletableFuture<?> post(String channelId, String content) {
+        return http.execute("POST", fakeDiscord.channelMessagesUrl(channelId), WebhookPayload.content(null, content).toJson())
+                .thenApply(res -> {
+                    if (res.status() >= 300) throw new IllegalStateException("HTTP " + res.status());
+                    return res;
+                });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executors.shutdown();
+        fakeDiscord.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void perLine(Requests r) {
+        long before = fakeDiscord.requests();
+        for (int i = 0; i < LINES; i++) {
+            post(channelIds[i % channels], "[lobby]player" + (i & 15) + ": こんにちは " + i).join();
+        }
+        r.discordRequests += fakeDiscord.requests() - before;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void pipelined(Requests r) throws InterruptedException {
+        long before = fakeDiscord.requests();
+        for (int i = 0; i < LINES; i++) {
+            sender.submit(channelIds[i % channels], "[lobby]player" + (i & 15) + ": こんにちは " + i);
+        }
+        sender.awaitDrain(10_000);
+        r.discordRequests += fakeDiscord.requests() - before;
+    }
+}
@@ -0,0 +1,67 @@
+package jp.atsukigames.discordbridge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+// 無害化の費用を禁止語リストの大きさごとに測る。
+// 比較対象は 1 語ずつ正規表現で置き換える素朴な実装（語数に比例して遅くなる）。
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SanitizerBenchmark {
+    @Param({"0", "100", "10000"})
+    public int words;
+
+    private TextSanitizer sanitizer;
+    private Pattern[] naive;
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<String> list = new ArrayList<>(words);
+        for (int i = 0; i < words; i++) list.add(String.format(Locale.ROOT, "badword%05d", i));
+        TextSanitizer.Settings s = new TextSanitizer.Settings();
+        s.filterWords = list;
+        sanitizer = new TextSanitizer(s);
+        naive = new Pattern[list.size()];
+        for (int i = 0; i < naive.length; i++) naive[i] = Pattern.compile(Pattern.quote(list.get(i)), Pattern.CASE_INSENSITIVE);
+        text = "§aSteve§r: おはよう **everyone** @here BadWord00042 を見た? _really_ `code` > quote "
+                + (words > 0 ? list.get(words - 1) : "") + " 以上です";
+    }
+
+    @Benchmark
+    public String toDiscord() {
+        return sanitizer.toDiscord(text);
+    }
+
+    @Benchmark
+    public String toGame() {
+        return sanitizer.toGame(text);
+    }
+
+    @Benchmark
+    public String naiveRegexMask() {
+        String t = text.replaceAll("§.", "");
+        for (Pattern p : naive) t = p.matcher(t).replaceAll("***");
+        return t;
+    }
+}
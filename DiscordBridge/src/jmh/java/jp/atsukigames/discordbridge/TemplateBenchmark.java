@@ -0,0 +1,56 @@
+package jp.atsukigames.discordbridge;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// 設定読み込み時にコンパイルしたテンプレートと、以前のハードコードの連結・素朴な replace の比較
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateBenchmark {
+    private final MessageTemplates templates = new MessageTemplates(new MessageTemplates.Settings());
+    private final String chatPlainSource = new MessageTemplates.Settings().chatPlain;
+
+    public String server = "lobby";
+    public String player = "Steve";
+    public String message = "こんにちは、今日はどのサーバーで遊びますか？";
+
+    @Benchmark
+    public String compiledChatPlain() {
+        return templates.chatPlain.render(server, player, message);
+    }
+
+    // 以前の sendChatAsWebhook と同じ連結
+    @Benchmark
+    public String concatChatPlain() {
+        return "[" + server + "]" + player + ": " + message;
+    }
+
+    // テンプレートを毎回 replace で展開した場合
+    @Benchmark
+    public String replaceChatPlain() {
+        return chatPlainSource.replace("%server%", server).replace("%player%", player).replace("%message%", message);
+    }
+
+    @Benchmark
+    public WebhookPayload compiledStatusCached() {
+        return templates.statusPayload(server, true);
+    }
+
+    @Benchmark
+    public String compiledJoin() {
+        return templates.join.render(server, player, null);
+    }
+}
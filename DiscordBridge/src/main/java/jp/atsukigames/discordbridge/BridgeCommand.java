@@ -0,0 +1,98 @@
+package jp.atsukigames.discordbridge;
+
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.command.SimpleCommand;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.List;
+import java.util.Locale;
+
+// /discordbridge <サブコマンド>
+public final class BridgeCommand implements SimpleCommand {
+    public static final String PERMISSION = "discordbridge.admin";
+    private static final List<String> SUBCOMMANDS = List.of("reload", "metrics", "status");
+
+    private final DiscordService discord;
+
+    public BridgeCommand(DiscordService discord) {
+        this.discord = discord;
+    }
+
+    @Override
+    public void execute(Invocation invocation) {
+        CommandSource src = invocation.source();
+        String[] args = invocation.arguments();
+        String sub = args.length == 0 ? "" : args[0].toLowerCase(Locale.ROOT);
+        switch (sub) {
+            case "reload":
+                reload(src);
+                break;
+            case "metrics":
+                discord.getMetrics().summary().forEach(line -> src.sendMessage(Component.text(line, NamedTextColor.GRAY)));
+                break;
+            case "status":
+                status(src, args.length > 1 ? args[1] : null);
+                break;
+            default:
+                src.sendMessage(Component.text("使い方: /discordbridge " + String.join("|", SUBCOMMANDS), NamedTextColor.YELLOW));
+                break;
+        }
+    }
+
+    private void reload(CommandSource src) {
+        discord.reloadAsync().whenComplete((r, ex) -> {
+            if (ex != null) {
+                src.sendMessage(Component.text("再読み込みに失敗しました: " + ex.getMessage(), NamedTextColor.RED));
+            } else if (r.applied()) {
+                src.sendMessage(Component.text("設定を再読み込みしました。", NamedTextColor.GREEN));
+                r.notes().forEach(n -> src.sendMessage(Component.text(" - " + n, NamedTextColor.GRAY)));
+            } else {
+                src.sendMessage(Component.text("設定に問題があるため反映しませんでした:", NamedTextColor.RED));
+                r.notes().forEach(n -> src.sendMessage(Component.text(" - " + n, NamedTextColor.RED)));
+            }
+        });
+    }
+
+    // /discordbridge status [サーバー]：サーバーごとの稼働率・ping・状態変化（1h / 24h / 7d）
+    private void status(CommandSource src, String only) {
+        StatusHistory h = discord.getStatusHistory();
+        if (h == null) {
+            src.sendMessage(Component.text("死活の履歴は無効です（statusHistory.enabled）。", NamedTextColor.YELLOW));
+            return;
+        }
+        List<String> servers = (only != null) ? List.of(only) : h.servers();
+        if (servers.isEmpty()) {
+            src.sendMessage(Component.text("まだ記録がありません。", NamedTextColor.YELLOW));
+            return;
+        }
+        HealthMonitor health = discord.getHealth();
+        for (String server : servers) {
+            Boolean up = (health != null) ? health.isOnline(server) : null;
+            NamedTextColor color = (up == null) ? NamedTextColor.WHITE : up ? NamedTextColor.GREEN : NamedTextColor.RED;
+            src.sendMessage(Component.text(server + (up == null ? "" : up ? " 稼働中" : " 停止中"), color));
+            for (StatusHistory.Window w : StatusHistory.Window.values()) {
+                src.sendMessage(Component.text(" " + StatusHistory.describe(w, h.summary(server, w)), NamedTextColor.GRAY));
+            }
+        }
+    }
+
+    @Override
+    public List<String> suggest(Invocation invocation) {
+        String[] args = invocation.arguments();
+        if (args.length == 2 && "status".equalsIgnoreCase(args[0])) {
+            StatusHistory h = discord.getStatusHistory();
+            if (h == null) return List.of();
+            String prefix = args[1].toLowerCase(Locale.ROOT);
+            return h.servers().stream().filter(s -> s.toLowerCase(Locale.ROOT).startsWith(prefix)).toList();
+        }
+        if (args.length > 1) return List.of();
+        String prefix = args.length == 0 ? "" : args[0].toLowerCase(Locale.ROOT);
+        return SUBCOMMANDS.stream().filter(s -> s.startsWith(prefix)).toList();
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission(PERMISSION);
+    }
+}
@@ -0,0 +1,117 @@
+package jp.atsukigames.discordbridge;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+// プラグイン専用のスレッドプール群。ForkJoinPool.commonPool やプロキシのスケジューラを占有しないよう、
+// 用途ごとに上限付きで分ける。
+//   io      : 起動処理・Webhook HTTP・ボット送信・プロフィール取得（完了を待つ Future があるので、溢れても捨てず呼び出し元で実行）
+//   health  : 死活監視の予約と ping 結果の処理
+//   format  : メッセージ整形・ゲーム内への配信（配信の進行状態を持つ仕事なので、溢れても捨てず呼び出し元で実行）
+//   webhook : Webhook 送信プールのレートリミット待ち（単一スレッド）
+public final class BridgeExecutors {
+    public enum Rejection { ABORT, CALLER_RUNS, DISCARD, DISCARD_OLDEST }
+
+    // config.json の executors
+    public static class Settings {
+        public int ioThreads = 4;
+        public int ioQueue = 1000;
+        public int healthThreads = 2;
+        public int formatThreads = 2;
+        public int formatQueue = 1000;
+        public Rejection rejection = Rejection.CALLER_RUNS; // 廃止。io・format とも常に CALLER_RUNS（他の値は警告して無視）
+        public boolean virtualThreads = false; // JDK 21 以降なら io を仮想スレッドで動かす
+    }
+
+    private final ExecutorService io;
+    private final ThreadPoolExecutor ioPool; // 仮想スレッド使用時は null
+    private final ScheduledThreadPoolExecutor health;
+    private final ThreadPoolExecutor format;
+    private final ScheduledExecutorService webhook;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public BridgeExecutors(Settings s, Logger logger) {
+        if (s == null) s = new Settings();
+        ExecutorService virtual = s.virtualThreads ? newVirtualExecutor(logger) : null;
+        if (virtual != null) {
+            this.io = virtual;
+            this.ioPool = null;
+        } else {
+            this.ioPool = newPool("io", s.ioThreads, s.ioQueue);
+            this.io = ioPool;
+        }
+        // 捨てる・例外にするポリシーでは配信の tick や分割配信の完了が来なくなり、Discord からの中継が止まったままになる
+        if (s.rejection != null && s.rejection != Rejection.CALLER_RUNS) {
+            logger.warning("executors.rejection=" + s.rejection + " is no longer supported; overflowing tasks run on the caller");
+        }
+        this.health = new ScheduledThreadPoolExecutor(Math.max(1, s.healthThreads), factory("health"));
+        this.health.setRemoveOnCancelPolicy(true);
+        this.format = newPool("format", s.formatThreads, s.formatQueue);
+        this.webhook = Executors.newSingleThreadScheduledExecutor(factory("webhook"));
+    }
+
+    private ThreadPoolExecutor newPool(String name, int threads, int queue) {
+        int n = Math.max(1, threads);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)), factory(name), callerRuns());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    // 溢れた回数を数えてから呼び出し元で実行する
+    private RejectedExecutionHandler callerRuns() {
+        RejectedExecutionHandler delegate = new ThreadPoolExecutor.CallerRunsPolicy();
+        return (r, ex) -> {
+            rejected.incrementAndGet();
+            delegate.rejectedExecution(r, ex);
+        };
+    }
+
+    private static ThreadFactory factory(String name) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "DiscordBridge-" + name + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // JDK 17 でもビルドできるよう反射で呼ぶ
+    private static ExecutorService newVirtualExecutor(Logger logger) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warning("Virtual threads are not available on this JVM; using a platform thread pool");
+            return null;
+        }
+    }
+
+    public ExecutorService io() { return io; }
+    public ScheduledExecutorService health() { return health; }
+    public ExecutorService format() { return format; }
+    public ScheduledExecutorService webhook() { return webhook; }
+
+    public long rejected() { return rejected.get(); }
+    public int ioQueueDepth() { return ioPool != null ? ioPool.getQueue().size() : 0; }
+    public int healthQueueDepth() { return health.getQueue().size(); }
+    public int formatQueueDepth() { return format.getQueue().size(); }
+    public int ioActive() { return ioPool != null ? ioPool.getActiveCount() : 0; }
+    public int formatActive() { return format.getActiveCount(); }
+
+    public void shutdown() {
+        health.shutdownNow();
+        webhook.shutdownNow();
+        format.shutdown();
+        io.shutdown();
+    }
+}
@@ -0,0 +1,156 @@
+package jp.atsukigames.discordbridge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+// 計測値の登録簿。送信経路ごとのカウンタは直接ここに持ち、各部品が元々持っている
+// カウンタ・キュー長・ヒストグラムは Collector が読み出し時に拾う（再読み込みで部品が入れ替わっても追従する）。
+// 出力はコマンド用の一覧と Prometheus テキスト形式の 2 通り。
+public final class BridgeMetrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    public interface Collector {
+        void collect(Sink out);
+    }
+
+    // labels は name, value, name, value ... の順
+    public interface Sink {
+        void counter(String name, String help, double value, String... labels);
+
+        void gauge(String name, String help, double value, String... labels);
+
+        void latency(String name, String help, LatencyHistogram h, String... labels);
+    }
+
+    private enum Type { COUNTER, GAUGE, SUMMARY }
+
+    private record Row(Type type, String name, String help, String[] labels, double value, LatencyHistogram histogram) {}
+
+    private record Key(String name, List<String> labels) {}
+
+    private record Direct(String help, String[] labels, LongAdder adder) {}
+
+    private final Map<Key, Direct> counters = new ConcurrentHashMap<>();
+    private final List<Collector> collectors = new CopyOnWriteArrayList<>();
+
+    // 呼び出し側でフィールドに保持して使う（毎回の検索を避ける）
+    public LongAdder counter(String name, String help, String... labels) {
+        return counters.computeIfAbsent(new Key(name, List.of(labels)), k -> new Direct(help, labels, new LongAdder())).adder();
+    }
+
+    public void register(Collector c) {
+        collectors.add(c);
+    }
+
+    private List<Row> rows() {
+        List<Row> rows = new ArrayList<>();
+        for (Map.Entry<Key, Direct> e : counters.entrySet()) {
+            Direct d = e.getValue();
+            rows.add(new Row(Type.COUNTER, e.getKey().name(), d.help(), d.labels(), d.adder().sum(), null));
+        }
+        Sink sink = new Sink() {
+            @Override
+            public void counter(String name, String help, double value, String... labels) {
+                rows.add(new Row(Type.COUNTER, name, help, labels, value, null));
+            }
+
+            @Override
+            public void gauge(String name, String help, double value, String... labels) {
+                rows.add(new Row(Type.GAUGE, name, help, labels, value, null));
+            }
+
+            @Override
+            public void latency(String name, String help, LatencyHistogram h, String... labels) {
+                rows.add(new Row(Type.SUMMARY, name, help, labels, 0, h));
+            }
+        };
+        for (Collector c : collectors) c.collect(sink);
+        rows.sort((a, b) -> a.name().compareTo(b.name()));
+        return rows;
+    }
+
+    // Prometheus テキスト形式（0.0.4）。所要時間は秒で出す
+    public String prometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        String lastName = null;
+        for (Row r : rows()) {
+            if (!r.name().equals(lastName)) {
+                sb.append("# HELP ").append(r.name()).append(' ').append(r.help()).append('\n');
+                sb.append("# TYPE ").append(r.name()).append(' ').append(r.type().name().toLowerCase(Locale.ROOT)).append('\n');
+                lastName = r.name();
+            }
+            if (r.type() != Type.SUMMARY) {
+                sb.append(r.name());
+                labels(sb, r.labels(), null);
+                sb.append(' ').append(number(r.value())).append('\n');
+                continue;
+            }
+            LatencyHistogram h = r.histogram();
+            for (double q : QUANTILES) {
+                sb.append(r.name());
+                labels(sb, r.labels(), Double.toString(q));
+                sb.append(' ').append(number(h.percentileNanos(q) / 1e9)).append('\n');
+            }
+            sb.append(r.name()).append("_sum");
+            labels(sb, r.labels(), null);
+            sb.append(' ').append(number(h.sumNanos() / 1e9)).append('\n');
+            sb.append(r.name()).append("_count");
+            labels(sb, r.labels(), null);
+            sb.append(' ').append(h.count()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    // コマンド表示用の 1 行 1 系列。所要時間はミリ秒
+    public List<String> summary() {
+        List<String> out = new ArrayList<>();
+        for (Row r : rows()) {
+            StringBuilder sb = new StringBuilder(r.name());
+            labels(sb, r.labels(), null);
+            if (r.type() != Type.SUMMARY) {
+                sb.append(' ').append(number(r.value()));
+            } else {
+                LatencyHistogram h = r.histogram();
+                sb.append(String.format(Locale.ROOT, " n=%d p50=%.1fms p99=%.1fms max=%.1fms", h.count(),
+                        h.percentileNanos(0.5) / 1e6, h.percentileNanos(0.99) / 1e6, h.maxNanos() / 1e6));
+            }
+            out.add(sb.toString());
+        }
+        return out;
+    }
+
+    private static void labels(StringBuilder sb, String[] labels, String quantile) {
+        if (labels.length == 0 && quantile == null) return;
+        sb.append('{');
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(labels[i]).append("=\"");
+            escape(sb, labels[i + 1]);
+            sb.append('"');
+        }
+        if (quantile != null) {
+            if (labels.length > 0) sb.append(',');
+            sb.append("quantile=\"").append(quantile).append('"');
+        }
+        sb.append('}');
+    }
+
+    private static void escape(StringBuilder sb, String v) {
+        if (v == null) return;
+        for (int i = 0; i < v.length(); i++) {
+            char c = v.charAt(i);
+            if (c == '\\' || c == '"') sb.append('\\').append(c);
+            else if (c == '\n') sb.append("\\n");
+            else sb.append(c);
+        }
+    }
+
+    private static String number(double v) {
+        return (v == Math.rint(v) && Math.abs(v) < 1e15) ? Long.toString((long) v) : Double.toString(v);
+    }
+}
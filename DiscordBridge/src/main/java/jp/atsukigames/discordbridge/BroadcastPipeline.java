@@ -0,0 +1,194 @@
+package jp.atsukigames.discordbridge;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.JoinConfiguration;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+// Discord -> ゲーム内の配信。1 tick 分のメッセージをまとめて Component を 1 回だけ組み立て、
+// プレイヤー一覧をチャンクに分けて並列に送る。前回の配信が終わっていなければ次の tick へ持ち越す。
+// 整形と配信は専用の format プールで行い、プロキシのスケジューラには tick の起動だけを任せる。
+// 宛先（ルートごとのサーバー絞り込み）が違うメッセージは宛先ごとに Component を組み、1 回の走査で配る。
+public final class BroadcastPipeline {
+    private record Incoming(String display, String content, Predicate<String> audience) {}
+
+    private record Target(Predicate<String> audience, Component msg) {}
+
+    private final ProxyServer proxy;
+    private final Object plugin;
+    private final Executor executor;
+    private final long tickMs;
+    private final int maxQueue;
+    private final int maxPerTick;
+    private final int chunkSize;
+
+    private final ArrayDeque<Incoming> queue = new ArrayDeque<>();
+    private final AtomicInteger chunksInFlight = new AtomicInteger();
+    private final AtomicBoolean ticking = new AtomicBoolean();
+    private ScheduledTask task;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong deferredTicks = new AtomicLong();
+    private final AtomicLong fanouts = new AtomicLong();
+    private final AtomicLong totalFanoutNanos = new AtomicLong();
+    private final LatencyHistogram fanoutLatency = new LatencyHistogram();
+
+    public BroadcastPipeline(ProxyServer proxy, Object plugin, Executor executor,
+                             long tickMs, int maxQueue, int maxPerTick, int chunkSize) {
+        this.proxy = proxy;
+        this.plugin = plugin;
+        this.executor = executor;
+        this.tickMs = Math.max(1, tickMs);
+        this.maxQueue = Math.max(1, maxQueue);
+        this.maxPerTick = Math.max(1, maxPerTick);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public void start() {
+        task = proxy.getScheduler().buildTask(plugin, this::tick)
+                .repeat(tickMs, TimeUnit.MILLISECONDS)
+                .schedule();
+    }
+
+    public void stop() {
+        if (task != null) task.cancel();
+    }
+
+    // audience はプレイヤーの所属サーバー名（未接続は null）で判定する。null なら全員
+    public void submit(String display, String content, Predicate<String> audience) {
+        synchronized (queue) {
+            if (queue.size() >= maxQueue) {
+                queue.pollFirst(); // 溢れたら古いものから捨てる
+                dropped.incrementAndGet();
+            }
+            queue.addLast(new Incoming(display, content, audience));
+        }
+    }
+
+    private void tick() {
+        if (!ticking.compareAndSet(false, true)) return; // 前回の tick 処理がまだ format プール上にある
+        try {
+            executor.execute(this::drain);
+        } catch (RuntimeException e) {
+            ticking.set(false);
+            throw e;
+        }
+    }
+
+    private void drain() {
+        try {
+            drainOnce();
+        } finally {
+            ticking.set(false);
+        }
+    }
+
+    private void drainOnce() {
+        if (chunksInFlight.get() > 0) {
+            deferredTicks.incrementAndGet(); // 前回の配信中：溜めたまま次の tick でまとめる
+            return;
+        }
+        List<Incoming> batch;
+        synchronized (queue) {
+            if (queue.isEmpty()) return;
+            int n = Math.min(queue.size(), maxPerTick);
+            batch = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) batch.add(queue.pollFirst());
+        }
+        Map<Predicate<String>, List<Component>> grouped = new LinkedHashMap<>();
+        for (Incoming in : batch) grouped.computeIfAbsent(in.audience(), k -> new ArrayList<>()).add(render(in));
+        Target[] targets = new Target[grouped.size()];
+        int i = 0;
+        for (Map.Entry<Predicate<String>, List<Component>> e : grouped.entrySet()) {
+            List<Component> lines = e.getValue();
+            Component msg = lines.size() == 1 ? lines.get(0) : Component.join(JoinConfiguration.newlines(), lines);
+            targets[i++] = new Target(e.getKey(), msg);
+        }
+        fanOut(targets, batch.size());
+    }
+
+    private static void deliver(Player p, Target[] targets) {
+        if (targets.length == 1 && targets[0].audience() == null) {
+            p.sendMessage(targets[0].msg());
+            return;
+        }
+        String server = p.getCurrentServer().map(cs -> cs.getServerInfo().getName()).orElse(null);
+        for (Target t : targets) {
+            if (t.audience() == null || t.audience().test(server)) p.sendMessage(t.msg());
+        }
+    }
+
+    private static Component render(Incoming in) {
+        return Component.text("[Discord]", NamedTextColor.GREEN)
+                .append(Component.text(" " + in.display() + ": " + in.content(), NamedTextColor.WHITE));
+    }
+
+    private void fanOut(Target[] targets, int count) {
+        final long started = System.nanoTime();
+        Player[] players = proxy.getAllPlayers().toArray(new Player[0]);
+        if (players.length <= chunkSize) {
+            for (Player p : players) deliver(p, targets);
+            finish(started, count);
+            return;
+        }
+        int chunks = (players.length + chunkSize - 1) / chunkSize;
+        chunksInFlight.set(chunks);
+        for (int c = 0; c < chunks; c++) {
+            final int from = c * chunkSize;
+            final int to = Math.min(players.length, from + chunkSize);
+            Runnable chunk = () -> {
+                try {
+                    for (int i = from; i < to; i++) deliver(players[i], targets);
+                } finally {
+                    if (chunksInFlight.decrementAndGet() == 0) finish(started, count);
+                }
+            };
+            try {
+                executor.execute(chunk);
+            } catch (RejectedExecutionException e) {
+                chunk.run(); // 停止中など。数え残しで次の配信が止まらないよう、ここで配り切る
+            }
+        }
+    }
+
+    private void finish(long startedNanos, int count) {
+        delivered.addAndGet(count);
+        fanouts.incrementAndGet();
+        long took = System.nanoTime() - startedNanos;
+        totalFanoutNanos.addAndGet(took);
+        fanoutLatency.record(took);
+    }
+
+    public int queueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public long delivered() { return delivered.get(); }
+    public long dropped() { return dropped.get(); }
+    public long deferredTicks() { return deferredTicks.get(); }
+    public long fanouts() { return fanouts.get(); }
+    public LatencyHistogram fanoutLatency() { return fanoutLatency; }
+
+    public double avgFanoutMs() {
+        long n = fanouts.get();
+        return n == 0 ? 0 : totalFanoutNanos.get() / 1_000_000.0 / n;
+    }
+}
@@ -0,0 +1,29 @@
+package jp.atsukigames.discordbridge;
+
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.message.GenericMessageEvent;
+import net.dv8tion.jda.api.hooks.InterfacedEventManager;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+// JDA のイベント配送の入口で、連携していないチャンネルのメッセージ系イベントを捨てる。
+// ボットが入っている他のサーバー・チャンネルの発言はリスナーまで届かない。
+public final class ChannelEventFilter extends InterfacedEventManager {
+    private final Predicate<String> bridged;
+    private final LongAdder dropped;
+
+    public ChannelEventFilter(Predicate<String> bridged, LongAdder dropped) {
+        this.bridged = bridged;
+        this.dropped = dropped;
+    }
+
+    @Override
+    public void handle(GenericEvent event) {
+        if (event instanceof GenericMessageEvent && !bridged.test(((GenericMessageEvent) event).getChannel().getId())) {
+            dropped.increment();
+            return;
+        }
+        super.handle(event);
+    }
+}
@@ -0,0 +1,192 @@
+package jp.atsukigames.discordbridge;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ゲーム内チャットを短いウィンドウで束ねて 1 通の Webhook 送信にまとめる
+public final class ChatBatcher {
+    public static final int MAX_CONTENT = 2000; // Discord の content 上限
+
+    public enum OverflowPolicy { DROP_NEWEST, DROP_OLDEST, MERGE }
+
+    @FunctionalInterface
+    public interface Sink {
+        void send(String username, String avatarUrl, String content);
+    }
+
+    private static final class Line {
+        final String username;
+        final String avatarUrl;
+        final StringBuilder text;
+        final long enqueuedNanos;
+
+        Line(String username, String avatarUrl, String text, long enqueuedNanos) {
+            this.username = username;
+            this.avatarUrl = avatarUrl;
+            this.text = new StringBuilder(text);
+            this.enqueuedNanos = enqueuedNanos;
+        }
+
+        boolean sameSender(String username, String avatarUrl) {
+            return this.username.equals(username) && Objects.equals(this.avatarUrl, avatarUrl);
+        }
+    }
+
+    private final ProxyServer proxy;
+    private final Object plugin;
+    private final Sink sink;
+    private final long windowMs;
+    private final int maxQueue;
+    private final OverflowPolicy policy;
+
+    private final ArrayDeque<Line> queue = new ArrayDeque<>();
+    private final Object flushLock = new Object(); // flush 同士の追い越しを防ぐ
+    private boolean flushScheduled;
+
+    // 調整用カウンタ
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong linesFlushed = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+    public ChatBatcher(ProxyServer proxy, Object plugin, Sink sink, long windowMs, int maxQueue, OverflowPolicy policy) {
+        this.proxy = proxy;
+        this.plugin = plugin;
+        this.sink = sink;
+        this.windowMs = windowMs;
+        this.maxQueue = Math.max(1, maxQueue);
+        this.policy = policy;
+    }
+
+    public void submit(String username, String text) {
+        submit(username, null, text);
+    }
+
+    public void submit(String username, String avatarUrl, String text) {
+        if (windowMs <= 0) {
+            // ウィンドウ 0 はバッチ無効（従来通り即送信）
+            for (String chunk : split(text)) {
+                sink.send(username, avatarUrl, chunk);
+                messagesSent.incrementAndGet();
+            }
+            return;
+        }
+        boolean schedule = false;
+        synchronized (queue) {
+            if (queue.size() >= maxQueue && !handleOverflow(username, avatarUrl, text)) return;
+            queue.addLast(new Line(username, avatarUrl, text, System.nanoTime()));
+            if (!flushScheduled) {
+                flushScheduled = true;
+                schedule = true;
+            }
+        }
+        if (schedule) {
+            proxy.getScheduler().buildTask(plugin, this::flush)
+                    .delay(windowMs, TimeUnit.MILLISECONDS)
+                    .schedule();
+        }
+    }
+
+    // 溢れ時の処理。false を返したら今回の行は捨てる
+    private boolean handleOverflow(String username, String avatarUrl, String text) {
+        switch (policy) {
+            case DROP_NEWEST:
+                dropped.incrementAndGet();
+                return false;
+            case MERGE: {
+                Line last = queue.peekLast();
+                if (last != null && last.sameSender(username, avatarUrl)
+                        && last.text.length() + 1 + text.length() <= MAX_CONTENT) {
+                    last.text.append('\n').append(text);
+                    merged.incrementAndGet();
+                    return false;
+                }
+                queue.pollFirst();
+                dropped.incrementAndGet();
+                return true;
+            }
+            case DROP_OLDEST:
+            default:
+                queue.pollFirst();
+                dropped.incrementAndGet();
+                return true;
+        }
+    }
+
+    // 溜まった行を送信者（名前・アバター）ごとの連続区間にまとめ、2000 文字単位で送る
+    public void flush() {
+        synchronized (flushLock) {
+            List<Line> batch;
+            synchronized (queue) {
+                flushScheduled = false;
+                if (queue.isEmpty()) return;
+                batch = new ArrayList<>(queue);
+                queue.clear();
+            }
+            long latency = System.nanoTime() - batch.get(0).enqueuedNanos;
+            flushes.incrementAndGet();
+            linesFlushed.addAndGet(batch.size());
+            flushLatency.record(latency);
+            maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+
+            Line current = null;
+            StringBuilder sb = new StringBuilder();
+            for (Line line : batch) {
+                if (current != null && !current.sameSender(line.username, line.avatarUrl)) {
+                    emit(current, sb);
+                }
+                current = line;
+                for (String chunk : split(line.text.toString())) {
+                    if (sb.length() > 0 && sb.length() + 1 + chunk.length() > MAX_CONTENT) emit(current, sb);
+                    if (sb.length() > 0) sb.append('\n');
+                    sb.append(chunk);
+                }
+            }
+            if (current != null) emit(current, sb);
+        }
+    }
+
+    private void emit(Line from, StringBuilder sb) {
+        if (sb.length() == 0) return;
+        sink.send(from.username, from.avatarUrl, sb.toString());
+        messagesSent.incrementAndGet();
+        sb.setLength(0);
+    }
+
+    // 2000 文字ごとに分ける（ボット経由・Webhook のみの送信でも使う）。絵文字などのサロゲートペアの途中では切らない
+    static List<String> split(String text) {
+        if (text.length() <= MAX_CONTENT) return List.of(text);
+        List<String> out = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            int end = Math.min(text.length(), i + MAX_CONTENT);
+            if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) end--;
+            out.add(text.substring(i, end));
+            i = end;
+        }
+        return out;
+    }
+
+    public int queueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public long flushes() { return flushes.get(); }
+    public long linesFlushed() { return linesFlushed.get(); }
+    public long messagesSent() { return messagesSent.get(); }
+    public long dropped() { return dropped.get(); }
+    public long merged() { return merged.get(); }
+    public long maxBatchSize() { return maxBatchSize.get(); }
+    public LatencyHistogram flushLatency() { return flushLatency; } // 平均・最大もここから読む
+}
@@ -0,0 +1,186 @@
+package jp.atsukigames.discordbridge;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+// 複数プロキシ（クラスタ）の取りまとめ。
+//   リーダー : heartbeat が届いている生存ノードのうち nodeId が最小のもの。投票は行わない
+//   重複排除 : 同じ出来事（イベント ID）を複数ノードが送ろうとしたら、claimWindowMs 待って最小の nodeId だけが送る
+//   中継     : Discord から受けたメッセージを全ノードへ流し、メッセージ ID で 1 回だけ配信する
+public final class ClusterCoordinator {
+    // config.json の cluster
+    public static class Settings {
+        public boolean enabled = false;
+        public String nodeId;                 // 空なら起動ごとに採番
+        public String transport = "udp";      // udp / local（同一プロセス内。検証用）
+        public String bind = ClusterTransport.Udp.DEFAULT_BIND; // 他のホストのノードと組むときだけ外向きのアドレスを書く
+        public int port = 25590;
+        public List<String> peers = new ArrayList<>(); // 他ノードの host:port
+        public String secret;                 // 共有鍵（HMAC）。udp では必須
+        public long replayWindowMs = 30_000;  // 送信時刻がこれより離れたデータグラムは捨てる
+        public long heartbeatMs = 1000;
+        public long leaderTimeoutMs = 3500;   // これだけ heartbeat が途絶えたノードは死んだとみなす
+        public long claimWindowMs = 200;
+        public long dedupTtlMs = 10_000;
+    }
+
+    public interface Listener {
+        void onLeaderChange(boolean isLeader);
+
+        void onRelay(String id, Map<String, String> data);
+    }
+
+    private static final String HEARTBEAT = "HEARTBEAT";
+    private static final String CLAIM = "CLAIM";
+    private static final String RELAY = "RELAY";
+
+    private static final class Claim {
+        String winner;
+        final long expiresNanos;
+
+        Claim(String winner, long expiresNanos) {
+            this.winner = winner;
+            this.expiresNanos = expiresNanos;
+        }
+    }
+
+    private final Settings settings;
+    private final String nodeId;
+    private final ClusterTransport transport;
+    private final ScheduledExecutorService scheduler;
+    private final Listener listener;
+    private final Logger logger;
+    private final long startedNanos = System.nanoTime();
+
+    private final ConcurrentMap<String, Long> peers = new ConcurrentHashMap<>();  // nodeId -> 最後の heartbeat
+    private final ConcurrentMap<String, Claim> claims = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> seen = new ConcurrentHashMap<>();   // 中継済みメッセージ ID -> 期限
+    private volatile boolean leader;
+    private ScheduledFuture<?> ticker;
+
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong relayed = new AtomicLong();
+    private final AtomicLong leaderChanges = new AtomicLong();
+
+    public ClusterCoordinator(Settings s, ClusterTransport transport, ScheduledExecutorService scheduler,
+                              Listener listener, Logger logger) {
+        this.settings = s;
+        this.nodeId = (s.nodeId == null || s.nodeId.isBlank()) ? UUID.randomUUID().toString() : s.nodeId;
+        this.transport = transport;
+        this.scheduler = scheduler;
+        this.listener = listener;
+        this.logger = logger;
+    }
+
+    public static ClusterTransport transportFor(Settings s, Logger logger) {
+        if ("local".equalsIgnoreCase(s.transport)) return new ClusterTransport.Local("default");
+        return new ClusterTransport.Udp(s.bind, s.port, s.peers, s.secret, s.replayWindowMs, logger);
+    }
+
+    public void start() throws IOException {
+        transport.start(this::receive);
+        long hb = Math.max(100, settings.heartbeatMs);
+        ticker = scheduler.scheduleWithFixedDelay(this::tick, 0, hb, TimeUnit.MILLISECONDS);
+        logger.info("Cluster node '" + nodeId + "' started");
+    }
+
+    public void close() {
+        if (ticker != null) ticker.cancel(false);
+        transport.close();
+    }
+
+    private void tick() {
+        try {
+            transport.publish(new ClusterTransport.Message(HEARTBEAT, nodeId, null, null));
+            long now = System.nanoTime();
+            claims.values().removeIf(c -> now - c.expiresNanos > 0);
+            seen.values().removeIf(exp -> now - exp > 0);
+            electLeader(now);
+        } catch (RuntimeException e) {
+            logger.warning("Cluster tick failed: " + e);
+        }
+    }
+
+    // 起動直後は他ノードの heartbeat を一通り聞くまで（leaderTimeoutMs）名乗らない
+    private void electLeader(long now) {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(settings.leaderTimeoutMs);
+        peers.values().removeIf(last -> now - last > timeout);
+        boolean next = now - startedNanos >= timeout;
+        for (String peer : peers.keySet()) {
+            if (peer.compareTo(nodeId) < 0) next = false;
+        }
+        if (next != leader) {
+            leader = next;
+            leaderChanges.incrementAndGet();
+            logger.info("Cluster node '" + nodeId + "' is " + (next ? "now the leader" : "no longer the leader")
+                    + " (" + (peers.size() + 1) + " node(s) alive)");
+            listener.onLeaderChange(next);
+        }
+    }
+
+    private void receive(ClusterTransport.Message m) {
+        if (m == null || m.type() == null || m.node() == null || nodeId.equals(m.node())) return;
+        peers.put(m.node(), System.nanoTime());
+        switch (m.type()) {
+            case CLAIM:
+                if (m.id() != null) mergeClaim(m.id(), m.node());
+                break;
+            case RELAY:
+                if (m.id() != null && m.data() != null && firstSeen(m.id())) listener.onRelay(m.id(), m.data());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private Claim mergeClaim(String eventId, String node) {
+        long now = System.nanoTime();
+        return claims.compute(eventId, (k, c) -> {
+            if (c == null || now - c.expiresNanos > 0) return new Claim(node, now + TimeUnit.MILLISECONDS.toNanos(settings.dedupTtlMs));
+            if (node.compareTo(c.winner) < 0) c.winner = node;
+            return c;
+        });
+    }
+
+    // eventId の出来事をクラスタ全体で 1 回だけ実行する。他ノードが先に名乗っていれば何もしない
+    public void claim(String eventId, Runnable action) {
+        Claim c = mergeClaim(eventId, nodeId);
+        if (!nodeId.equals(c.winner)) {
+            suppressed.incrementAndGet();
+            return;
+        }
+        transport.publish(new ClusterTransport.Message(CLAIM, nodeId, eventId, null));
+        scheduler.schedule(() -> {
+            Claim now = claims.get(eventId);
+            if (now == null || nodeId.equals(now.winner)) action.run();
+            else suppressed.incrementAndGet();
+        }, settings.claimWindowMs, TimeUnit.MILLISECONDS);
+    }
+
+    // 初めて見た ID なら true（期限は dedupTtlMs）
+    public boolean firstSeen(String id) {
+        return seen.putIfAbsent(id, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.dedupTtlMs)) == null;
+    }
+
+    public void relay(String id, Map<String, String> data) {
+        relayed.incrementAndGet();
+        transport.publish(new ClusterTransport.Message(RELAY, nodeId, id, data));
+    }
+
+    public boolean isLeader() { return leader; }
+    public String nodeId() { return nodeId; }
+    public int peerCount() { return peers.size(); }
+    public long suppressed() { return suppressed.get(); }
+    public long relayed() { return relayed.get(); }
+    public long leaderChanges() { return leaderChanges.get(); }
+}
@@ -0,0 +1,187 @@
+package jp.atsukigames.discordbridge;
+
+import com.google.gson.Gson;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+// 複数プロキシ間の連絡路。差し替え可能にしておき、同一プロセス内の Local を計測・検証に使う
+public interface ClusterTransport extends AutoCloseable {
+    // type: HEARTBEAT / CLAIM / RELAY
+    record Message(String type, String node, String id, Map<String, String> data) {}
+
+    void start(Consumer<Message> receiver) throws IOException;
+
+    // 自分以外の全ノードへ（届かなくても例外にしない）
+    void publish(Message m);
+
+    @Override
+    void close();
+
+    // 同一プロセス内のハブ。hub 名が同じもの同士でだけ届く
+    final class Local implements ClusterTransport {
+        private static final Map<String, List<Local>> HUBS = new ConcurrentHashMap<>();
+
+        private final String hub;
+        private volatile Consumer<Message> receiver;
+
+        public Local(String hub) {
+            this.hub = hub;
+        }
+
+        @Override
+        public void start(Consumer<Message> receiver) {
+            this.receiver = receiver;
+            HUBS.computeIfAbsent(hub, k -> new CopyOnWriteArrayList<>()).add(this);
+        }
+
+        @Override
+        public void publish(Message m) {
+            for (Local peer : HUBS.getOrDefault(hub, List.of())) {
+                Consumer<Message> r = peer.receiver;
+                if (peer != this && r != null) r.accept(m);
+            }
+        }
+
+        @Override
+        public void close() {
+            List<Local> members = HUBS.get(hub);
+            if (members != null) members.remove(this);
+        }
+    }
+
+    // UDP ユニキャスト。peers（host:port）へ同じデータグラムを送る。
+    // データグラム = 送信時刻（epoch ミリ秒 8 バイト）+ JSON + HMAC-SHA256（時刻と JSON の両方に掛ける）。
+    // secret 無しでは起動しない。署名が合わないもの、時刻が replayWindowMs より離れたもの、
+    // 窓の中で同じ署名を 2 度見たもの（再送攻撃）は捨てる。ノード間の時計は NTP などで揃えておくこと
+    final class Udp implements ClusterTransport {
+        static final String DEFAULT_BIND = "127.0.0.1";
+        private static final int MAX_DATAGRAM = 60_000;
+        private static final int TS_LEN = 8;
+        private static final int MAC_LEN = 32;
+
+        private final InetSocketAddress bind;
+        private final List<InetSocketAddress> peers = new ArrayList<>();
+        private final byte[] secret;
+        private final long replayWindowMs;
+        private final Logger logger;
+        private final Gson gson = new Gson();
+        private final LinkedHashMap<ByteBuffer, Long> recentMacs = new LinkedHashMap<>(); // 署名 -> 送信時刻。受信スレッドだけが触る
+
+        private DatagramSocket socket;
+
+        public Udp(String bindHost, int port, List<String> peers, String secret, long replayWindowMs, Logger logger) {
+            if (secret == null || secret.isEmpty()) throw new IllegalArgumentException("cluster.secret is required for the udp transport");
+            // 明示しなければ外へは開かない
+            this.bind = new InetSocketAddress((bindHost == null || bindHost.isBlank()) ? DEFAULT_BIND : bindHost, port);
+            for (String p : peers) {
+                int colon = p.lastIndexOf(':');
+                if (colon <= 0) throw new IllegalArgumentException("cluster peer must be host:port: " + p);
+                this.peers.add(new InetSocketAddress(p.substring(0, colon), Integer.parseInt(p.substring(colon + 1))));
+            }
+            this.secret = secret.getBytes(StandardCharsets.UTF_8);
+            this.replayWindowMs = Math.max(1000, replayWindowMs);
+            this.logger = logger;
+        }
+
+        @Override
+        public void start(Consumer<Message> receiver) throws IOException {
+            this.socket = new DatagramSocket(bind);
+            Thread thread = new Thread(() -> loop(receiver), "DiscordBridge-cluster");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void loop(Consumer<Message> receiver) {
+            byte[] buf = new byte[65_535];
+            DatagramPacket packet = new DatagramPacket(buf, buf.length);
+            while (!socket.isClosed()) {
+                try {
+                    packet.setLength(buf.length);
+                    socket.receive(packet);
+                    Message m = open(Arrays.copyOf(packet.getData(), packet.getLength()), System.currentTimeMillis());
+                    if (m != null) receiver.accept(m);
+                } catch (SocketException e) {
+                    return; // close()
+                } catch (IOException | RuntimeException e) { // 壊れた JSON など
+                    logger.fine("Dropped cluster datagram: " + e);
+                }
+            }
+        }
+
+        @Override
+        public void publish(Message m) {
+            byte[] body = seal(gson.toJson(m).getBytes(StandardCharsets.UTF_8), System.currentTimeMillis());
+            if (body.length > MAX_DATAGRAM) {
+                logger.warning("Cluster message too large to send (" + body.length + " bytes): " + m.type());
+                return;
+            }
+            for (InetSocketAddress peer : peers) {
+                try {
+                    socket.send(new DatagramPacket(body, body.length, peer));
+                } catch (IOException e) {
+                    logger.fine("Failed to send cluster message to " + peer + ": " + e.getMessage());
+                }
+            }
+        }
+
+        byte[] seal(byte[] json, long nowMillis) {
+            byte[] out = new byte[TS_LEN + json.length + MAC_LEN];
+            ByteBuffer.wrap(out).putLong(nowMillis).put(json);
+            System.arraycopy(mac(out, TS_LEN + json.length), 0, out, TS_LEN + json.length, MAC_LEN);
+            return out;
+        }
+
+        // 受け付けられないものは null
+        Message open(byte[] data, long nowMillis) {
+            if (data.length < TS_LEN + MAC_LEN) return null;
+            int len = data.length - MAC_LEN;
+            byte[] sig = Arrays.copyOfRange(data, len, data.length);
+            if (!MessageDigest.isEqual(mac(data, len), sig)) return null;
+            long sentMillis = ByteBuffer.wrap(data).getLong();
+            if (Math.abs(nowMillis - sentMillis) > replayWindowMs) return null;
+            // 窓を出た署名は時刻の検査で弾けるので忘れてよい
+            for (Iterator<Long> it = recentMacs.values().iterator(); it.hasNext(); ) {
+                if (nowMillis - it.next() > replayWindowMs) it.remove();
+                else break;
+            }
+            if (recentMacs.putIfAbsent(ByteBuffer.wrap(sig), sentMillis) != null) return null;
+            return gson.fromJson(new String(data, TS_LEN, len - TS_LEN, StandardCharsets.UTF_8), Message.class);
+        }
+
+        private byte[] mac(byte[] data, int len) {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+                mac.update(data, 0, len);
+                return mac.doFinal();
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (socket != null) socket.close();
+        }
+    }
+}
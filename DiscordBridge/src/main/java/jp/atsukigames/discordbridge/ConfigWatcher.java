@@ -0,0 +1,90 @@
+package jp.atsukigames.discordbridge;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// config.json の変更監視。エディタは 1 回の保存で複数回書き込むので、debounceMs 静かになってから、
+// 中身が実際に変わっていたときだけ onChange を呼ぶ。監視は専用のデーモンスレッド 1 本で行う。
+public final class ConfigWatcher {
+    private final Path file;
+    private final long debounceMs;
+    private final Runnable onChange;
+    private final Logger logger;
+
+    private WatchService service;
+    private Thread thread;
+    private byte[] last;
+    private volatile boolean closed;
+
+    public ConfigWatcher(Path file, long debounceMs, Runnable onChange, Logger logger) {
+        this.file = file;
+        this.debounceMs = Math.max(50, debounceMs);
+        this.onChange = onChange;
+        this.logger = logger;
+    }
+
+    public void start() throws IOException {
+        Path dir = file.getParent();
+        this.last = read();
+        this.service = dir.getFileSystem().newWatchService();
+        dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::loop, "DiscordBridge-config-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void loop() {
+        try {
+            while (!closed) {
+                if (!touched(service.take())) continue;
+                // 書き込みが落ち着くまで待つ
+                WatchKey more;
+                while ((more = service.poll(debounceMs, TimeUnit.MILLISECONDS)) != null) touched(more);
+                byte[] now = read();
+                if (now == null || Arrays.equals(now, last)) continue;
+                last = now;
+                try {
+                    onChange.run();
+                } catch (RuntimeException e) {
+                    logger.warning("Config reload failed: " + e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 停止
+        }
+    }
+
+    private boolean touched(WatchKey key) {
+        boolean hit = false;
+        for (WatchEvent<?> ev : key.pollEvents()) {
+            if (file.getFileName().equals(ev.context())) hit = true;
+        }
+        key.reset();
+        return hit;
+    }
+
+    private byte[] read() {
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            return null; // 書き換え途中で消えている
+        }
+    }
+
+    public void close() {
+        closed = true;
+        try {
+            if (service != null) service.close();
+        } catch (IOException ignored) {}
+        if (thread != null) thread.interrupt();
+    }
+}
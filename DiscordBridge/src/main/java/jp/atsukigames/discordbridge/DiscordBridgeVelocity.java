@@ -1,8 +1,10 @@
 package jp.atsukigames.discordbridge;
 
+import com.velocitypowered.api.command.CommandManager;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.connection.PostLoginEvent;
+import com.velocitypowered.api.event.player.KickedFromServerEvent;
 import com.velocitypowered.api.event.player.PlayerChatEvent;
 import com.velocitypowered.api.event.player.ServerPostConnectEvent;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
@@ -37,6 +39,8 @@ public final class DiscordBridgeVelocity {
             Files.createDirectories(dataDirectory.resolve("config"));
         } catch (Exception ignored) {}
         this.discord = new DiscordService(proxy, java.util.logging.Logger.getLogger("DiscordBridge"), dataDirectory, this);
+        CommandManager commands = proxy.getCommandManager();
+        commands.register(commands.metaBuilder("discordbridge").plugin(this).build(), new BridgeCommand(discord));
         discord.start().whenComplete((v, ex) -> {
             if (ex == null) {
                 discord.sendServerStatusViaWebhook("Velocity", true); // 起動: 緑帯[2][4]
@@ -78,6 +82,7 @@ public final class DiscordBridgeVelocity {
     @Subscribe
     public void onJoin(PostLoginEvent e) {
         if (discord != null) {
+            discord.onPlayerJoin(e.getPlayer().getUniqueId());
             discord.sendJoinQuitViaWebhook(e.getPlayer().getUsername(), true); // 参加通知（Embed）[2][3]
         }
     }
@@ -87,12 +92,30 @@ public final class DiscordBridgeVelocity {
     public void onQuit(DisconnectEvent e) {
         if (discord != null) {
             discord.sendJoinQuitViaWebhook(e.getPlayer().getUsername(), false); // 退出通知（Embed）[3]
+            discord.onPlayerQuit(e.getPlayer().getUniqueId());
         }
     }
 
-    // サーバー移動通知は無効化
+    // サーバー移動通知は無効化（接続成功は死活監視の受動シグナルとしてのみ使う）
     @Subscribe
-    public void onServerMove(ServerPostConnectEvent e) {}
+    public void onServerMove(ServerPostConnectEvent e) {
+        if (discord != null) {
+            e.getPlayer().getCurrentServer()
+                    .ifPresent(cs -> discord.reportBackendReachable(cs.getServerInfo().getName()));
+        }
+    }
+
+    // キック：理由なしは接続自体の失敗、理由ありは停止の兆候として ping で確認
+    @Subscribe
+    public void onKicked(KickedFromServerEvent e) {
+        if (discord == null) return;
+        String name = e.getServer().getServerInfo().getName();
+        if (e.getServerKickReason().isEmpty()) {
+            discord.reportBackendUnreachable(name);
+        } else {
+            discord.reportBackendKick(name);
+        }
+    }
 
     // ゲーム内チャット → Discord（Webhookで[%server%]%player%名義）
     @Subscribe
@@ -102,7 +125,7 @@ public final class DiscordBridgeVelocity {
                 .map(cs -> cs.getServerInfo().getName())
                 .orElse("unknown");
         if (discord != null) {
-            discord.sendChatAsWebhook(serverName, p.getUsername(), e.getMessage()); // 通常メッセージ（content）[1]
+            discord.sendChatAsWebhook(serverName, p.getUniqueId(), p.getUsername(), e.getMessage()); // 通常メッセージ（content）[1]
         }
     }
 }
@@ -1,223 +1,1333 @@
 package jp.atsukigames.discordbridge;
 
 import com.google.gson.Gson;
-import com.velocitypowered.api.proxy.Player;
+import com.google.gson.JsonParseException;
 import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
-import club.minnced.discord.webhook.WebhookClient;
-import club.minnced.discord.webhook.WebhookClientBuilder;
-import club.minnced.discord.webhook.send.WebhookEmbedBuilder;
-import club.minnced.discord.webhook.send.WebhookMessageBuilder;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
-import net.dv8tion.jda.api.entities.channel.unions.MessageChannelUnion;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
+import net.dv8tion.jda.api.events.channel.ChannelDeleteEvent;
+import net.dv8tion.jda.api.events.channel.update.GenericChannelUpdateEvent;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.session.ReadyEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
 import net.dv8tion.jda.api.requests.GatewayIntent;
-import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.format.NamedTextColor;
+import net.dv8tion.jda.api.utils.ChunkingFilter;
+import net.dv8tion.jda.api.utils.MemberCachePolicy;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 import java.util.logging.Logger;
 
 public class DiscordService extends ListenerAdapter {
     public static class Config {
-        public String botToken;
+        public String botToken; // 空なら Webhook のみで動かす（ゲートウェイに接続しない）
         public String channelId;
         public String webhookUrl;
+        public List<String> webhookUrls; // 複数指定でレートリミットを分散（webhookUrl と併用可）
+        // バックエンドごとの振り分け（載らないサーバーは channelId / webhookUrl へ）
+        public List<RoutingTable.RouteSettings> routes;
+        public Map<String, List<String>> serverGroups;
+        // 送信レーンごとの上限（STATUS > JOIN_QUIT > CHAT の優先度で送る）
+        public int statusQueueMax = 100;
+        public int joinQuitQueueMax = 500;
+        public int chatQueueMax = 1000;
+        public int plainQueueMax = 1000; // ボット経由の送信待ち（チャンネルごと）
+        public boolean webhookParallel = false; // 同じレーンを複数 Webhook へ並行に送る。速くなるが到着順は保証されない
+        // 未送信メッセージをディスクに残し、再起動後に送り直す
+        public boolean spoolEnabled = true;
+        public long spoolMaxBytes = 64L * 1024 * 1024;
+        public int spoolSegmentBytes = 4 * 1024 * 1024;
+        public long shutdownDrainMs = 5000; // 停止時に送信キューが空くのを待つ上限
+        public boolean watchConfig = true;  // config.json の変更を検知して自動で再読み込み
+        // Prometheus 用 /metrics（0 で無効）
+        public int metricsPort = 0;
+        public String metricsBind = "127.0.0.1";
         public boolean enableMessageContentIntent = true;
+        // LIGHT: メンバー等のキャッシュを持たず GUILDS・GUILD_MESSAGES（+ MESSAGE_CONTENT）だけ受け取る / DEFAULT: JDA 既定
+        public GatewayProfile gatewayProfile = GatewayProfile.LIGHT;
+
+        // チャットのバッチ送信（0 で無効）
+        public long chatBatchWindowMs = 250;
+        public int chatBatchMaxQueue = 500;
+        public ChatBatcher.OverflowPolicy chatBatchOverflow = ChatBatcher.OverflowPolicy.DROP_OLDEST;
+
+        // 参加・退出の集約（windowMs 内に joinQuitStormThreshold 件以上で要約 1 通にまとめる。0 で無効）
+        public long joinQuitWindowMs = 3000;
+        public int joinQuitStormThreshold = 5;
+
+        // Discord -> ゲーム内配信
+        public long broadcastTickMs = 50;
+        public int broadcastMaxQueue = 256;
+        public int broadcastMaxPerTick = 20;
+        public int broadcastChunkSize = 250;
+
+        // 死活監視（healthCheckServers でサーバーごとに上書き）
+        public HealthMonitor.Settings healthCheck;
+        public Map<String, HealthMonitor.Settings> healthCheckServers;
+        // 死活の履歴（dataDirectory/history）と稼働状況のまとめ
+        public StatusHistory.Settings statusHistory = new StatusHistory.Settings();
+        // 全サーバーの状態を 1 通にまとめて書き換え続ける（既定ルートの Webhook。alerts で従来の状態通知を絞る）
+        public StatusDashboard.Settings dashboard = new StatusDashboard.Settings();
+
+        // Discord からの問い合わせ（/online /servers /ping）。ボットが必要
+        public SlashCommands.Settings slashCommands = new SlashCommands.Settings();
+
+        // 送信文言（%server% %player% %message% %count% %players%）
+        public MessageTemplates.Settings messages = new MessageTemplates.Settings();
+
+        // チャットの Webhook 表示（スキンのアバター・連携した Discord の名前）
+        public PlayerProfileCache.Settings profiles = new PlayerProfileCache.Settings();
+
+        // チャット本文の無害化（Markdown・メンション・装飾コード・禁止語）
+        public TextSanitizer.Settings sanitize = new TextSanitizer.Settings();
+
+        // 専用スレッドプールの大きさ・拒否ポリシー
+        public BridgeExecutors.Settings executors = new BridgeExecutors.Settings();
+
+        // 複数プロキシでの運用（リーダーだけが死活監視、状態通知の重複排除、Discord 受信の全ノード中継）
+        public ClusterCoordinator.Settings cluster = new ClusterCoordinator.Settings();
     }
 
     private final ProxyServer proxy;
     private final Logger logger;
+    private final Path dataDirectory;
     private final Path configPath;
     private final Object plugin;
 
-    private Config config;
-    private JDA jda;
-    private WebhookClient webhookClient;
+    // 設定と、そこから作った不変の部品一式。再読み込みでは丸ごと差し替え、読み込み済みの Config は書き換えない
+    private record Snapshot(Config config, MessageTemplates templates, TextSanitizer sanitizer, RoutingTable routing) {}
+
+    public record ReloadResult(boolean applied, List<String> notes) {}
+
+    public enum GatewayProfile { LIGHT, DEFAULT }
+
+    private volatile Snapshot snapshot;
+    private volatile JDA jda;
+    private volatile boolean stopped;
+    private BridgeExecutors executors;
+    private final Map<String, Outbound> outbounds = new ConcurrentHashMap<>(); // ルート名 -> 送信先
+    private JoinQuitAggregator joinQuit;
+    private BroadcastPipeline broadcast;
+    private HealthMonitor health;
+    private volatile StatusHistory history; // 無効なら null
+    private ScheduledFuture<?> summaryTask;
+    private volatile StatusDashboard dashboard; // 無効なら null
+    private volatile SlashCommands slash; // ゲートウェイなし・無効なら null
+    private PlainSender plain;
+    private volatile PlayerProfileCache profiles; // 無効なら null
+    private final Map<String, TextChannel> channelCache = new ConcurrentHashMap<>(); // 解決済みチャンネル。更新・削除・再接続で捨てる
+    private volatile ClusterCoordinator cluster; // クラスタ無効なら null
+    private final Object healthRole = new Object();
+    private boolean healthWarm;    // healthRole で保護
+    private boolean healthRunning; // healthRole で保護
+
+    // 起動段階の管理
+    private static final int STARTUP_BACKLOG_MAX = 500;
+    private volatile CompletableFuture<JDA> jdaReady = new CompletableFuture<>(); // 再接続のたびに作り直す
+    private final List<Runnable> startupBacklog = new ArrayList<>();
+    private final List<Plain> plainBacklog = new ArrayList<>();
+    private boolean outboundReady; // startupBacklog で保護
+    private final Map<String, Long> startupTimings = new ConcurrentHashMap<>();
+    private ConfigWatcher watcher;
+    private MetricsServer metricsServer;
+
+    // 計測（送信経路ごとの件数はここで数え、各部品の値は collectMetrics で読み出す）
+    private final BridgeMetrics metrics = new BridgeMetrics();
+    private final LongAdder chatOut = metrics.counter("discordbridge_outbound_messages_total", "Messages accepted for Discord by send path", "path", "chat");
+    private final LongAdder statusOut = metrics.counter("discordbridge_outbound_messages_total", "Messages accepted for Discord by send path", "path", "status");
+    private final LongAdder joinQuitOut = metrics.counter("discordbridge_outbound_messages_total", "Messages accepted for Discord by send path", "path", "join_quit");
+    private final LongAdder plainOut = metrics.counter("discordbridge_jda_messages_total", "Messages sent through the bot instead of a webhook");
+    private final LongAdder gatewayFiltered = metrics.counter("discordbridge_gateway_events_filtered_total", "Message events from unbridged channels dropped before listeners");
+    private volatile long gatewayReadyMs = -1; // 直近の接続で準備完了までにかかった時間
+    private final LongAdder plainDropped = metrics.counter("discordbridge_plain_dropped_total", "Bot-path messages dropped because neither a bot connection nor a webhook for the channel exists");
+    private final Set<String> unroutableChannels = ConcurrentHashMap.newKeySet(); // 警告済み
+    private final LongAdder inbound = metrics.counter("discordbridge_inbound_messages_total", "Discord messages relayed into the game");
+
+    // ルートごとの送信先。Webhook の無いルートは JDA から直接送る。
+    // 再読み込みで route / chat は差し替わり、Webhook を外されたルートのプールは送信待ちを流し終えるまで残す。
+    // 設定から消えたルートは一覧から外し、送信待ちを流し終えたらスプールを閉じる
+    private static final class Outbound {
+        volatile RoutingTable.Route route;
+        volatile WebhookSenderPool pool;
+        volatile ChatBatcher chat;
+        OutboundSpool spool;
+
+        Outbound(RoutingTable.Route route) {
+            this.route = route;
+        }
 
-    // 状態保持（並行更新に備えて Concurrent）
-    private final ConcurrentMap<String, Boolean> lastOnline = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, Integer> downStreak = new ConcurrentHashMap<>();
+        WebhookSenderPool activePool() {
+            return route.webhookUrls().isEmpty() ? null : pool;
+        }
+    }
 
-    // しきい値
-    private static final int STARTUP_FAILS = 2; // 起動直後 未観測 -> 停止判定に必要な連続失敗回数
-    private static final int RUNTIME_FAILS = 1; // 観測済み 稼働中 -> 停止判定に必要な連続失敗回数
-    private static final long PING_TIMEOUT_SEC = 3;
-    private static final long TICK_INTERVAL_SEC = 10;
-    private static final long FIRST_DELAY_SEC = 5;
+    private record Plain(String channelId, String text) {}
 
     public DiscordService(ProxyServer proxy, Logger logger, Path dataDirectory, Object plugin) {
         this.proxy = proxy;
         this.logger = logger;
+        this.dataDirectory = dataDirectory;
         this.configPath = dataDirectory.resolve("config").resolve("config.json");
         this.plugin = plugin;
+        metrics.register(this::collectMetrics);
     }
 
     public void loadConfig() throws IOException {
+        this.snapshot = snapshotOf(readConfig());
+    }
+
+    private Config readConfig() throws IOException {
         try (Reader r = Files.newBufferedReader(configPath)) {
             Gson gson = new Gson();
-            this.config = gson.fromJson(r, Config.class);
+            Config c = gson.fromJson(r, Config.class);
+            if (c == null) throw new IOException("config.json is empty");
+            return c;
+        } catch (JsonParseException e) {
+            throw new IOException("config.json is not valid JSON: " + e.getMessage(), e);
         }
     }
 
-    public CompletableFuture<Void> start() {
-        return CompletableFuture.runAsync(() -> {
+    private Snapshot snapshotOf(Config c) {
+        return new Snapshot(c,
+                new MessageTemplates(c.messages), // 読み込み時に 1 回だけ解析
+                new TextSanitizer(c.sanitize),
+                new RoutingTable(c.channelId, RoutingTable.urls(c.webhookUrl, c.webhookUrls), c.routes, c.serverGroups, logger));
+    }
+
+    // 反映前の検査。問題があれば理由を返す（空なら OK）
+    static List<String> validate(Config c) {
+        List<String> errors = new ArrayList<>();
+        if (c.statusQueueMax <= 0 || c.joinQuitQueueMax <= 0 || c.chatQueueMax <= 0) errors.add("queue sizes must be positive");
+        if (c.chatBatchOverflow == null) errors.add("chatBatchOverflow must be one of " + Arrays.toString(ChatBatcher.OverflowPolicy.values()));
+        List<String> urls = new ArrayList<>(RoutingTable.urls(c.webhookUrl, c.webhookUrls));
+        Set<String> names = new HashSet<>();
+        // ボットが無ければ、チャンネルだけのルートには送る手段が無い（他のルートの Webhook へ流すと別のチャンネルに出る）
+        if (!hasGateway(c) && c.channelId != null && !c.channelId.isBlank() && urls.isEmpty()) {
+            errors.add("channelId needs webhookUrl when there is no botToken");
+        }
+        if (c.routes != null) {
+            for (RoutingTable.RouteSettings r : c.routes) {
+                if (r == null) continue;
+                if (r.name == null || !names.add(r.name)) errors.add("route name is missing or duplicated: " + r.name);
+                List<String> routeUrls = RoutingTable.urls(r.webhookUrl, r.webhookUrls);
+                if (!hasGateway(c) && r.channelId != null && !r.channelId.isBlank() && routeUrls.isEmpty()) {
+                    errors.add("route '" + r.name + "' needs a webhook URL when there is no botToken");
+                }
+                urls.addAll(routeUrls);
+            }
+        }
+        if (!hasGateway(c) && urls.isEmpty()) errors.add("either botToken or a webhook URL is required");
+        if (c.cluster != null && c.cluster.enabled && !"local".equalsIgnoreCase(c.cluster.transport)
+                && (c.cluster.secret == null || c.cluster.secret.isEmpty())) {
+            errors.add("cluster.secret is required when the cluster is enabled");
+        }
+        for (String u : urls) {
             try {
-                if (this.config == null) loadConfig();
-                JDABuilder builder = JDABuilder.createDefault(config.botToken);
-                if (config.enableMessageContentIntent) builder.enableIntents(GatewayIntent.MESSAGE_CONTENT);
-                this.jda = builder.addEventListeners(this).build();
-                this.jda.awaitReady();
-
-                if (config.webhookUrl != null && !config.webhookUrl.isBlank()) {
-                    WebhookClientBuilder wcb = new WebhookClientBuilder(config.webhookUrl);
-                    wcb.setDaemon(true);
-                    this.webhookClient = wcb.build();
+                URI uri = URI.create(u);
+                if (uri.getHost() == null || !("https".equals(uri.getScheme()) || "http".equals(uri.getScheme()))) {
+                    errors.add("not a webhook URL: " + u);
                 }
+            } catch (IllegalArgumentException e) {
+                errors.add("not a webhook URL: " + u);
+            }
+        }
+        return errors;
+    }
 
-                // 起動時ウォームアップ（停止は黙る、起動のみ通知）
-                warmupSnapshot();
+    static boolean hasGateway(Config c) {
+        return c.botToken != null && !c.botToken.isBlank();
+    }
 
-                // 監視開始（初回5秒遅延 → 10秒間隔）
-                proxy.getScheduler()
-                        .buildTask(plugin, this::tickPing)
-                        .delay(FIRST_DELAY_SEC, TimeUnit.SECONDS)
-                        .repeat(TICK_INTERVAL_SEC, TimeUnit.SECONDS)
-                        .schedule();
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException(ie);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+    // 段階的な非同期起動。
+    // 設定 → Webhook（ゲートウェイ不要なので即座に送信可能）→ JDA ログイン → ウォームアップ → 監視開始。
+    // 返り値は Webhook 段階の完了。JDA の準備完了は待たない。
+    // 設定読み込みだけは専用プールの大きさを決めるため呼び出し元で行い、以降はすべて io プールで動かす。
+    public CompletableFuture<Void> start() {
+        final long t0 = System.nanoTime();
+        try {
+            if (this.snapshot == null) loadConfig();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        final Config config = snapshot.config();
+        this.executors = new BridgeExecutors(config.executors, logger);
+        this.plain = new PlainSender(this::sendViaRest, executors.io(), config.plainQueueMax, logger);
+        if (config.profiles != null && config.profiles.enabled) {
+            PlayerProfileCache pc = new PlayerProfileCache(config.profiles, proxy, this::discordName, executors.io(), logger);
+            proxy.getAllPlayers().forEach(p -> pc.refresh(p.getUniqueId())); // 起動前から接続中のプレイヤー
+            this.profiles = pc;
+        }
+        if (hasGateway(config) && config.slashCommands != null && config.slashCommands.enabled) {
+            SlashCommands sc = new SlashCommands(config.slashCommands, proxy,
+                    server -> {
+                        HealthMonitor h = health;
+                        return (h != null) ? h.isOnline(server) : null;
+                    },
+                    server -> {
+                        HealthMonitor h = health;
+                        return (h != null) ? h.lastPingMs(server) : null;
+                    },
+                    () -> {
+                        ClusterCoordinator c = cluster;
+                        return c == null || c.isLeader();
+                    },
+                    () -> snapshot.sanitizer(),
+                    executors.health(), logger);
+            sc.start();
+            this.slash = sc;
+        }
+        if (config.cluster != null && config.cluster.enabled) startCluster(config.cluster);
+        stageDone("config", t0);
+
+        CompletableFuture<Void> outbound = CompletableFuture.runAsync(() -> {
+            startOutbound();
+            stageDone("webhook", t0);
+        }, executors.io());
+
+        outbound.thenRun(this::drainStartupBacklog);
+
+        // ゲートウェイはバックグラウンドで接続。準備完了は onReady で受け取る
+        if (hasGateway(config)) {
+            outbound.thenRun(() -> connectGateway(config, t0));
+        } else {
+            logger.info("botToken is not set; running webhook-only (no Discord gateway, Discord -> game relay disabled)");
+        }
+
+        // 起動時ウォームアップ（停止は黙る、起動のみ通知）→ 監視開始（初回5秒遅延、以降サーバーごとに可変間隔）
+        outbound.thenComposeAsync(v -> {
+            StatusHistory h = openHistory(config);
+            StatusDashboard d = dashboard;
+            HealthMonitor.Recorder recorder = (h == null && d == null) ? null : (server, sample, latency, online, transition) -> {
+                if (h != null) h.record(server, sample, latency, online, transition);
+                if (d != null) d.onSample(server, sample, latency, online, transition);
+            };
+            this.health = new HealthMonitor(proxy, executors.health(), config.healthCheck, config.healthCheckServers,
+                    this::sendServerStatusViaWebhook, recorder);
+            return health.warmup();
+        }, executors.health()).thenRun(() -> {
+            stageDone("warmup", t0);
+            synchronized (healthRole) {
+                healthWarm = true;
             }
+            applyHealthRole();
+            StatusDashboard d = dashboard;
+            if (d != null && !stopped) d.start(); // 最初の掲示はウォームアップの結果から
         });
+
+        if (config.metricsPort > 0) {
+            outbound.thenRun(() -> {
+                MetricsServer m = new MetricsServer(metrics);
+                try {
+                    m.start(config.metricsBind, config.metricsPort, executors.io());
+                    this.metricsServer = m;
+                    logger.info("Metrics endpoint listening on " + config.metricsBind + ":" + config.metricsPort + "/metrics");
+                } catch (IOException e) {
+                    logger.warning("Failed to start metrics endpoint: " + e.getMessage());
+                }
+            });
+        }
+
+        if (config.watchConfig) {
+            outbound.thenRun(() -> {
+                ConfigWatcher w = new ConfigWatcher(configPath, 500, () -> reloadAsync().thenAccept(this::logReload), logger);
+                try {
+                    w.start();
+                    this.watcher = w;
+                } catch (IOException e) {
+                    logger.warning("Failed to watch config.json: " + e.getMessage());
+                }
+            });
+        }
+
+        return outbound;
+    }
+
+    // 設定に不備（udp で secret が空など）があればクラスタに加わらず単独で動く
+    private void startCluster(ClusterCoordinator.Settings cs) {
+        ClusterTransport transport;
+        try {
+            transport = ClusterCoordinator.transportFor(cs, logger);
+        } catch (IllegalArgumentException e) {
+            logger.warning("Cluster is disabled; running standalone: " + e.getMessage());
+            return;
+        }
+        ClusterCoordinator c = new ClusterCoordinator(cs, transport, executors.health(),
+                new ClusterCoordinator.Listener() {
+                    @Override
+                    public void onLeaderChange(boolean isLeader) {
+                        applyHealthRole();
+                    }
+
+                    @Override
+                    public void onRelay(String id, Map<String, String> data) {
+                        deliverInbound(data.get("channel"), data.get("display"), data.get("content"));
+                    }
+                }, logger);
+        try {
+            c.start();
+            this.cluster = c;
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Failed to start cluster transport; running standalone: " + e.getMessage());
+            c.close();
+        }
+    }
+
+    private StatusHistory openHistory(Config config) {
+        if (config.statusHistory == null || !config.statusHistory.enabled) return null;
+        StatusHistory h = new StatusHistory(dataDirectory.resolve("history"), config.statusHistory, logger);
+        try {
+            h.open();
+        } catch (IOException e) {
+            logger.warning("Failed to open status history; not recording: " + e.getMessage());
+            return null;
+        }
+        this.history = h;
+        long every = config.statusHistory.summaryIntervalMin;
+        if (every > 0) summaryTask = executors.health().scheduleAtFixedRate(this::postStatusSummary, every, every, TimeUnit.MINUTES);
+        return h;
+    }
+
+    // 送信経路の準備後・ウォームアップ前に作る（起動時の状態通知から alerts を効かせる）。掲示は start() から
+    private void openDashboard(Config config) {
+        if (config.dashboard == null || !config.dashboard.enabled) return;
+        if (outbound(snapshot.routing().defaultRoute()).activePool() == null) {
+            logger.warning("dashboard needs a webhook on the default route; disabled");
+            return;
+        }
+        if (config.dashboard.pin && !hasGateway(config)) {
+            logger.info("dashboard message will not be pinned: webhooks cannot pin messages and botToken is not set");
+        }
+        this.dashboard = new StatusDashboard(config.dashboard, snapshot.templates(), proxy,
+                server -> {
+                    HealthMonitor h = health;
+                    return (h != null) ? h.isOnline(server) : null;
+                },
+                () -> {
+                    ClusterCoordinator c = cluster;
+                    return c == null || c.isLeader();
+                },
+                this::publishDashboard, this::pinDashboard, dataDirectory.resolve("dashboard-message.txt"),
+                executors.health(), logger);
+    }
+
+    private CompletableFuture<String> publishDashboard(String messageId, WebhookPayload payload) {
+        WebhookSenderPool pool = outbound(snapshot.routing().defaultRoute()).activePool();
+        if (pool == null) return CompletableFuture.failedFuture(new IllegalStateException("no webhook on the default route"));
+        return pool.upsert(WebhookSenderPool.Lane.STATUS, messageId, payload);
+    }
+
+    // Webhook ではピン留めできないので、ボットがいればボットで留める
+    private void pinDashboard(String messageId) {
+        Snapshot snap = snapshot;
+        String channelId = snap.routing().defaultRoute().channelId();
+        if (!hasGateway(snap.config()) || channelId == null) return;
+        jdaReady.thenAcceptAsync(j -> {
+            TextChannel ch = resolveChannel(channelId);
+            if (ch == null) return;
+            ch.pinMessageById(messageId).queue(null,
+                    ex -> logger.warning("Failed to pin the dashboard message (needs Manage Messages): " + ex.getMessage()));
+        }, executors.io());
+    }
+
+    // 稼働状況のまとめ（サーバーごとに 1h / 24h / 7d）。クラスタでは履歴を持つリーダーだけが送る
+    // scheduleAtFixedRate は例外が出ると以後の実行を止めるので、ここで受け止める
+    private void postStatusSummary() {
+        try {
+            StatusHistory h = history;
+            ClusterCoordinator c = cluster;
+            if (h == null || stopped || (c != null && !c.isLeader())) return;
+            Snapshot snap = snapshot;
+            MessageTemplates t = snap.templates();
+            StringBuilder sb = new StringBuilder("**稼働状況**");
+            boolean allUp = true;
+            for (String server : h.servers()) {
+                Boolean up = (health != null) ? health.isOnline(server) : null;
+                if (Boolean.FALSE.equals(up)) allUp = false;
+                StringBuilder part = new StringBuilder("\n\n**").append(server).append("**");
+                if (up != null) part.append(up ? " 稼働中" : " 停止中");
+                for (StatusHistory.Window w : StatusHistory.Window.values()) {
+                    part.append("\n").append(StatusHistory.describe(w, h.summary(server, w)));
+                }
+                if (sb.length() + part.length() > JoinQuitAggregator.MAX_DESCRIPTION - 16) {
+                    sb.append("\n…");
+                    break;
+                }
+                sb.append(part);
+            }
+            statusOut.increment();
+            Outbound o = outbound(snap.routing().defaultRoute());
+            WebhookSenderPool pool = o.activePool();
+            if (pool != null) {
+                pool.send(WebhookSenderPool.Lane.STATUS, WebhookPayload.embed(t.joinQuitUsername, allUp ? t.colorUp : t.colorDown, sb.toString()));
+            } else {
+                sendPlain(o.route.channelId(), sb.toString(), WebhookSenderPool.Lane.STATUS);
+            }
+        } catch (RuntimeException e) {
+            logger.warning("Failed to post the status summary: " + e);
+        }
+    }
+
+    // クラスタではリーダーだけが能動 ping を行う（ウォームアップ前は何もしない）
+    private void applyHealthRole() {
+        synchronized (healthRole) {
+            HealthMonitor h = health;
+            if (h == null || !healthWarm || stopped) return;
+            ClusterCoordinator c = cluster;
+            boolean run = (c == null) || c.isLeader();
+            if (run == healthRunning) return;
+            if (run) h.start();
+            else h.stop();
+            healthRunning = run;
+        }
+    }
+
+    private void connectGateway(Config c, long t0) {
+        CompletableFuture<JDA> ready = jdaReady;
+        final long connectStarted = System.nanoTime();
+        CompletableFuture.runAsync(() -> {
+            this.jda = newJdaBuilder(c, this::isBridgedChannel, gatewayFiltered).addEventListeners(this).build();
+            if (stopped) jda.shutdownNow(); // 接続中に停止された
+        }, executors.io()).exceptionally(ex -> {
+            logger.severe("Discord gateway failed to start: " + ex.getMessage());
+            ready.completeExceptionally(ex);
+            return null;
+        });
+        ready.thenAcceptAsync(j -> {
+            if (t0 >= 0) stageDone("gateway", t0);
+            this.gatewayReadyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStarted);
+            logger.info("Discord gateway ready in " + gatewayReadyMs + " ms (profile " + c.gatewayProfile + "): "
+                    + j.getGuildCache().size() + " guild(s), " + j.getTextChannelCache().size() + " text channel(s), "
+                    + j.getUserCache().size() + " user(s), " + cachedMembers(j) + " member(s) cached");
+            drainPlainBacklog();
+            registerCommands(j);
+        }, executors.io());
+    }
+
+    // 連携チャンネルのあるギルドへスラッシュコマンドを登録する（ギルド単位なら即時に反映される）
+    private void registerCommands(JDA j) {
+        SlashCommands sc = slash;
+        if (sc == null) return;
+        Set<String> guilds = new HashSet<>();
+        for (RoutingTable.Route route : snapshot.routing().routes()) {
+            TextChannel ch = (route.channelId() != null) ? resolveChannel(route.channelId()) : null;
+            if (ch == null) continue;
+            Guild g = ch.getGuild();
+            if (!guilds.add(g.getId())) continue;
+            // 1 件ずつ upsert する（一括の updateCommands と違い、このボットの他のギルドコマンドを消さない）
+            for (CommandData def : SlashCommands.definitions()) {
+                g.upsertCommand(def).queue(null, ex -> logger.warning("Failed to register /" + def.getName()
+                        + " in guild " + g.getId() + ": " + ex.getMessage()));
+            }
+        }
+    }
+
+    // 連携に要るのは登録チャンネルのメッセージだけなので、LIGHT では他のキャッシュ・intent を持たない
+    // （src/jmh の GatewayProfileComparison も同じ設定で接続して比べる）
+    static JDABuilder newJdaBuilder(Config c, Predicate<String> bridged, LongAdder filtered) {
+        if (c.gatewayProfile == GatewayProfile.DEFAULT) {
+            JDABuilder builder = JDABuilder.createDefault(c.botToken);
+            if (c.enableMessageContentIntent) builder.enableIntents(GatewayIntent.MESSAGE_CONTENT);
+            return builder;
+        }
+        // GUILDS はチャンネルの解決と更新・削除イベントに要る
+        List<GatewayIntent> intents = new ArrayList<>(List.of(GatewayIntent.GUILDS, GatewayIntent.GUILD_MESSAGES));
+        if (c.enableMessageContentIntent) intents.add(GatewayIntent.MESSAGE_CONTENT);
+        return JDABuilder.createLight(c.botToken, intents)
+                .setMemberCachePolicy(MemberCachePolicy.NONE)
+                .setChunkingFilter(ChunkingFilter.NONE)
+                .setEventManager(new ChannelEventFilter(bridged, filtered));
+    }
+
+    private boolean isBridgedChannel(String channelId) {
+        Snapshot snap = snapshot;
+        return snap != null && snap.routing().forChannel(channelId) != null;
+    }
+
+    private static long cachedMembers(JDA j) {
+        long n = 0;
+        for (Guild g : j.getGuilds()) n += g.getMemberCache().size();
+        return n;
+    }
+
+    // 旧接続を閉じてから張り直す。その間の sendPlain は新しい接続の準備完了まで溜まる。
+    // PlainSender の送信待ちも先頭へ移して一緒に溜める（旧接続では送れず、捨てられてしまうので）。送信中の 1 件は旧接続の shutdown が送り切る。
+    // botToken が消えていれば閉じるだけで Webhook のみに切り替える
+    private void reconnectGateway(Config c) {
+        JDA old = this.jda;
+        synchronized (plainBacklog) {
+            this.jdaReady = new CompletableFuture<>();
+            List<Plain> queued = new ArrayList<>();
+            for (PlainSender.Line l : plain.takeQueued()) queued.add(new Plain(l.channelId(), l.text()));
+            plainBacklog.addAll(0, queued);
+        }
+        this.jda = null;
+        channelCache.clear();
+        if (old != null) old.shutdown();
+        if (hasGateway(c)) {
+            if (broadcast == null) startBroadcast(c);
+            connectGateway(c, -1);
+        } else {
+            if (broadcast != null && !c.cluster.enabled) {
+                broadcast.stop();
+                this.broadcast = null;
+            }
+            logger.info("botToken removed; continuing webhook-only");
+            jdaReady.completeExceptionally(new IllegalStateException("botToken removed")); // 準備完了を待っている送信を終わらせる
+            drainPlainBacklog();
+        }
+    }
+
+    public CompletableFuture<ReloadResult> reloadAsync() {
+        if (executors == null) return CompletableFuture.completedFuture(reload());
+        return CompletableFuture.supplyAsync(this::reload, executors.io());
+    }
+
+    // 設定の再読み込み。検査に通らなければ何も変えない。
+    // 変わった部分（Webhook 送信先・ルーティング・文言など）だけ作り直し、送信キューとスプールは引き継ぐ。
+    // 新しいルートの送信先を作ってから設定を差し替え、その後で消えたルートを片付ける（差し替えの瞬間に送信先の無いルートを作らない）。
+    // JDA はトークンかインテントが変わったときだけ再接続する。
+    public synchronized ReloadResult reload() {
+        Snapshot cur = snapshot;
+        Config next;
+        try {
+            next = readConfig();
+        } catch (IOException e) {
+            return new ReloadResult(false, List.of(e.getMessage()));
+        }
+        List<String> errors = validate(next);
+        if (!errors.isEmpty()) return new ReloadResult(false, errors);
+
+        Snapshot s = snapshotOf(next);
+        List<String> notes = new ArrayList<>();
+        if (cur == null || stopped || !outboundStarted()) {
+            this.snapshot = s;
+            return new ReloadResult(true, notes); // 起動前は読み直すだけ
+        }
+        Config old = cur.config();
+
+        List<String> added = new ArrayList<>();
+        for (RoutingTable.Route route : s.routing().routes()) {
+            if (outbounds.containsKey(route.name())) continue;
+            outbounds.put(route.name(), openOutbound(route, next));
+            added.add(route.name());
+            notes.add("route '" + route.name() + "' added");
+        }
+        this.snapshot = s;
+
+        boolean chatChanged = old.chatBatchWindowMs != next.chatBatchWindowMs
+                || old.chatBatchMaxQueue != next.chatBatchMaxQueue || old.chatBatchOverflow != next.chatBatchOverflow;
+        Set<String> current = new HashSet<>();
+        for (RoutingTable.Route route : s.routing().routes()) {
+            current.add(route.name());
+            if (added.contains(route.name())) continue;
+            Outbound o = outbounds.get(route.name());
+            o.route = route;
+            ChatBatcher retired = null;
+            if (route.webhookUrls().isEmpty()) {
+                retired = o.chat; // 以降は JDA 経由。溜まっていた分は旧 Webhook へ流し切る
+                o.chat = null;
+            } else if (o.pool == null) {
+                attachPool(o, route, next);
+            } else {
+                o.pool.reconfigure(route.webhookUrls(), capacities(next));
+                if (o.chat == null || chatChanged) {
+                    retired = o.chat;
+                    o.chat = newChatBatcher(o.pool, next);
+                }
+            }
+            if (retired != null) retired.flush();
+        }
+        for (String name : new ArrayList<>(outbounds.keySet())) {
+            if (current.contains(name)) continue;
+            retireOutbound(outbounds.remove(name), next.shutdownDrainMs);
+            notes.add("route '" + name + "' removed");
+        }
+
+        if (old.joinQuitWindowMs != next.joinQuitWindowMs || old.joinQuitStormThreshold != next.joinQuitStormThreshold) {
+            JoinQuitAggregator retired = joinQuit;
+            this.joinQuit = newJoinQuit(next);
+            retired.flush();
+        }
+        if (!Objects.equals(old.botToken, next.botToken) || old.enableMessageContentIntent != next.enableMessageContentIntent
+                || old.gatewayProfile != next.gatewayProfile) {
+            notes.add("reconnecting to Discord");
+            reconnectGateway(next);
+        }
+        Gson gson = new Gson();
+        if (!gson.toJson(old.executors).equals(gson.toJson(next.executors))) notes.add("executors: takes effect after restart");
+        if (!gson.toJson(old.healthCheck).equals(gson.toJson(next.healthCheck))
+                || !gson.toJson(old.healthCheckServers).equals(gson.toJson(next.healthCheckServers))) {
+            notes.add("healthCheck: takes effect after restart");
+        }
+        if (!gson.toJson(old.statusHistory).equals(gson.toJson(next.statusHistory))) notes.add("statusHistory: takes effect after restart");
+        if (!gson.toJson(old.dashboard).equals(gson.toJson(next.dashboard))) notes.add("dashboard: takes effect after restart");
+        if (!gson.toJson(old.slashCommands).equals(gson.toJson(next.slashCommands))) notes.add("slashCommands: takes effect after restart");
+        StatusDashboard d = dashboard;
+        if (d != null) d.setTemplates(s.templates());
+        if (old.broadcastTickMs != next.broadcastTickMs || old.broadcastMaxQueue != next.broadcastMaxQueue
+                || old.broadcastMaxPerTick != next.broadcastMaxPerTick || old.broadcastChunkSize != next.broadcastChunkSize) {
+            notes.add("broadcast: takes effect after restart");
+        }
+        if (old.metricsPort != next.metricsPort || !Objects.equals(old.metricsBind, next.metricsBind)) {
+            notes.add("metrics endpoint: takes effect after restart");
+        }
+        if (old.plainQueueMax != next.plainQueueMax) notes.add("plainQueueMax: takes effect after restart");
+        if (old.webhookParallel != next.webhookParallel) notes.add("webhookParallel: takes effect after restart");
+        if (!gson.toJson(old.profiles).equals(gson.toJson(next.profiles))) notes.add("profiles: takes effect after restart");
+        if (!gson.toJson(old.cluster).equals(gson.toJson(next.cluster))) notes.add("cluster: takes effect after restart");
+        if (old.spoolEnabled != next.spoolEnabled || old.spoolMaxBytes != next.spoolMaxBytes
+                || old.spoolSegmentBytes != next.spoolSegmentBytes) {
+            notes.add("spool: takes effect after restart");
+        }
+        return new ReloadResult(true, notes);
+    }
+
+    private void logReload(ReloadResult r) {
+        if (r.applied()) {
+            logger.info("Reloaded config.json" + (r.notes().isEmpty() ? "" : " (" + String.join("; ", r.notes()) + ")"));
+        } else {
+            logger.warning("Rejected config.json: " + String.join("; ", r.notes()));
+        }
+    }
+
+    private boolean outboundStarted() {
+        synchronized (startupBacklog) {
+            return outboundReady;
+        }
+    }
+
+    private void startOutbound() {
+        final Config config = snapshot.config();
+        // Webhook のみなら Discord からの受信が無いので配信 tick も回さない（クラスタでは他ノードからの中継を配る）
+        if (hasGateway(config) || config.cluster.enabled) startBroadcast(config);
+        this.joinQuit = newJoinQuit(config);
+
+        for (RoutingTable.Route route : snapshot.routing().routes()) {
+            outbounds.put(route.name(), openOutbound(route, config));
+        }
+        openDashboard(config);
+    }
+
+    private JoinQuitAggregator newJoinQuit(Config config) {
+        return new JoinQuitAggregator(proxy, plugin, new JoinQuitAggregator.Sink() {
+            @Override
+            public void single(String player, boolean isJoin) {
+                sendJoinQuitNow(player, isJoin);
+            }
+
+            @Override
+            public void summary(List<String> joined, List<String> left) {
+                sendJoinQuitSummary(joined, left);
+            }
+        }, config.joinQuitWindowMs, config.joinQuitStormThreshold);
+    }
+
+    private static Map<WebhookSenderPool.Lane, Integer> capacities(Config config) {
+        Map<WebhookSenderPool.Lane, Integer> caps = new EnumMap<>(WebhookSenderPool.Lane.class);
+        caps.put(WebhookSenderPool.Lane.STATUS, config.statusQueueMax);
+        caps.put(WebhookSenderPool.Lane.JOIN_QUIT, config.joinQuitQueueMax);
+        caps.put(WebhookSenderPool.Lane.CHAT, config.chatQueueMax);
+        return caps;
+    }
+
+    private void startBroadcast(Config config) {
+        BroadcastPipeline b = new BroadcastPipeline(proxy, plugin, executors.format(), config.broadcastTickMs,
+                config.broadcastMaxQueue, config.broadcastMaxPerTick, config.broadcastChunkSize);
+        b.start();
+        this.broadcast = b;
+    }
+
+    private Outbound openOutbound(RoutingTable.Route route, Config config) {
+        Outbound o = new Outbound(route);
+        if (!route.webhookUrls().isEmpty()) attachPool(o, route, config);
+        return o;
+    }
+
+    // 設定から消えたルート：溜まっていたチャットを流し、送信待ちが空く（か drainMs 経つ）のを待ってスプールを閉じる。
+    // 以降このルート宛てのメッセージは既定ルートへ流れる
+    private void retireOutbound(Outbound o, long drainMs) {
+        if (o.chat != null) o.chat.flush();
+        WebhookSenderPool pool = o.pool;
+        if (pool == null) return;
+        CompletableFuture.runAsync(() -> {
+            try {
+                if (!pool.awaitDrain(drainMs)) {
+                    logger.info(pool.queueDepth() + " message(s) left unsent for removed route '" + o.route.name() + "'");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (o.spool != null) o.spool.close();
+        }, executors.io());
+    }
+
+    private void attachPool(Outbound o, RoutingTable.Route route, Config config) {
+        List<OutboundSpool.Entry> recovered = List.of();
+        if (config.spoolEnabled) {
+            // 既定ルートは従来どおり spool 直下、それ以外は spool/<ルート名>
+            Path dir = route.isDefault() ? dataDirectory.resolve("spool") : dataDirectory.resolve("spool").resolve(route.name());
+            OutboundSpool s = new OutboundSpool(dir, config.spoolSegmentBytes, config.spoolMaxBytes, logger);
+            try {
+                recovered = s.open();
+                o.spool = s;
+            } catch (IOException e) {
+                logger.warning("Failed to open outbound spool for route '" + route.name() + "'; sending without it: " + e.getMessage());
+            }
+        }
+        WebhookSenderPool pool = new WebhookSenderPool(route.webhookUrls(), capacities(config),
+                new WebhookTransport.Http(executors.io()), executors.webhook(), logger, o.spool, config.webhookParallel);
+        if (!recovered.isEmpty()) {
+            logger.info("Resending " + recovered.size() + " message(s) left in the spool for route '" + route.name() + "'");
+            pool.replay(recovered);
+        }
+        o.pool = pool;
+        o.chat = newChatBatcher(pool, config);
+    }
+
+    private ChatBatcher newChatBatcher(WebhookSenderPool pool, Config config) {
+        return new ChatBatcher(proxy, plugin,
+                (username, avatarUrl, content) -> pool.send(WebhookSenderPool.Lane.CHAT,
+                        new WebhookPayload(username, avatarUrl, content, List.of())),
+                config.chatBatchWindowMs, config.chatBatchMaxQueue, config.chatBatchOverflow);
+    }
+
+    // 起動前や設定にないルート名は既定ルートへ寄せる
+    private Outbound outbound(RoutingTable.Route route) {
+        Outbound o = outbounds.get(route.name());
+        return (o != null) ? o : outbounds.get(RoutingTable.DEFAULT);
+    }
+
+    private void stageDone(String stage, long t0) {
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+        startupTimings.put(stage, ms);
+        logger.info("Startup stage '" + stage + "' done at +" + ms + " ms");
+    }
+
+    public Map<String, Long> getStartupTimings() {
+        return Map.copyOf(startupTimings);
+    }
+
+    @Override
+    public void onReady(ReadyEvent event) {
+        jdaReady.complete(event.getJDA());
+    }
+
+    @Override
+    public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
+        SlashCommands sc = slash;
+        if (sc != null) sc.onCommand(event);
+    }
+
+    @Override
+    public void onCommandAutoCompleteInteraction(CommandAutoCompleteInteractionEvent event) {
+        SlashCommands sc = slash;
+        if (sc != null) sc.onAutoComplete(event);
+    }
+
+    @Override
+    public void onChannelDelete(ChannelDeleteEvent event) {
+        channelCache.remove(event.getChannel().getId());
+    }
+
+    @Override
+    public void onGenericChannelUpdate(GenericChannelUpdateEvent<?> event) {
+        channelCache.remove(event.getChannel().getId());
+    }
+
+    // Webhook 段階が終わる前の送信は溜めておき、終わったら順に流す
+    private boolean deferUntilOutbound(Runnable send) {
+        synchronized (startupBacklog) {
+            if (outboundReady) return false;
+            if (startupBacklog.size() < STARTUP_BACKLOG_MAX) startupBacklog.add(send);
+            return true;
+        }
+    }
+
+    private void drainStartupBacklog() {
+        List<Runnable> pending;
+        synchronized (startupBacklog) {
+            outboundReady = true;
+            pending = new ArrayList<>(startupBacklog);
+            startupBacklog.clear();
+        }
+        pending.forEach(Runnable::run);
+    }
+
+    private void drainPlainBacklog() {
+        List<Plain> pending;
+        synchronized (plainBacklog) {
+            pending = new ArrayList<>(plainBacklog);
+            plainBacklog.clear();
+        }
+        pending.forEach(p -> sendPlain(p.channelId(), p.text()));
     }
 
     public void stop() {
-        if (this.jda != null) this.jda.shutdownNow();
-        if (this.webhookClient != null) this.webhookClient.close();
+        stopped = true;
+        if (this.watcher != null) this.watcher.close();
+        if (this.metricsServer != null) this.metricsServer.stop();
+        if (this.cluster != null) this.cluster.close();
+        if (this.health != null) this.health.stop();
+        if (this.slash != null) this.slash.stop();
+        if (this.summaryTask != null) this.summaryTask.cancel(false);
+        if (this.history != null) this.history.close();
+        if (this.dashboard != null) this.dashboard.close(); // 「停止中」への編集も下の drain で送る
+        if (this.broadcast != null) this.broadcast.stop();
+        for (Outbound o : outbounds.values()) {
+            if (o.chat != null) o.chat.flush();
+        }
+        if (this.joinQuit != null) this.joinQuit.flush();
+        Snapshot snap = snapshot;
+        long drainMs = (snap != null) ? snap.config().shutdownDrainMs : 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainMs);
+        for (Outbound o : outbounds.values()) {
+            if (o.pool == null) continue;
+            try {
+                long left = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                if (!o.pool.awaitDrain(left)) {
+                    logger.info(o.pool.queueDepth() + " message(s) left unsent for route '" + o.route.name() + "'"
+                            + (o.spool != null ? "; kept in the spool" : ""));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (this.plain != null) {
+            try {
+                long left = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                if (!plain.awaitDrain(left)) logger.info(plain.queueDepth() + " bot message(s) left unsent");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (this.jda != null) this.jda.shutdown(); // 送信中の REST 要求は終わらせる
+        for (Outbound o : outbounds.values()) {
+            if (o.spool != null) o.spool.close();
+        }
+        if (this.executors != null) this.executors.shutdown();
     }
 
     @Override
     public void onMessageReceived(MessageReceivedEvent event) {
         if (event.getAuthor().isBot()) return;
-        if (config == null || config.channelId == null) return;
-        if (!event.getChannel().getId().equals(config.channelId)) return;
+        Snapshot snap = snapshot;
+        if (snap == null) return;
+        String channelId = event.getChannel().getId();
+        if (snap.routing().forChannel(channelId) == null) return;
 
         String display = (event.getMember() != null) ? event.getMember().getEffectiveName() : event.getAuthor().getName();
         String content = event.getMessage().getContentDisplay();
 
-        proxy.getScheduler().buildTask(plugin, () -> {
-            Component msg = Component.text("[Discord]", NamedTextColor.GREEN)
-                    .append(Component.text(" " + display + ": " + content, NamedTextColor.WHITE));
-            for (Player p : proxy.getAllPlayers()) p.sendMessage(msg);
-        }).schedule();
+        ClusterCoordinator c = cluster;
+        if (c != null) {
+            // 他ノードのボットも同じメッセージを受けていれば、先に届いた方だけを配る
+            String id = event.getMessageId();
+            if (!c.firstSeen(id)) return;
+            c.relay(id, Map.of("channel", channelId, "display", display, "content", content));
+        }
+        deliverInbound(channelId, display, content);
+    }
+
+    private void deliverInbound(String channelId, String display, String content) {
+        Snapshot snap = snapshot;
+        if (snap == null || channelId == null || display == null || content == null) return;
+        RoutingTable table = snap.routing();
+        RoutingTable.Route route = table.forChannel(channelId);
+        if (route == null) return;
+
+        TextSanitizer s = snap.sanitizer();
+        inbound.increment();
+        // ルートが既定 1 本だけなら全員へ。それ以外は対応するサーバーにいるプレイヤーだけへ
+        Predicate<String> audience = table.routes().size() == 1 ? null : table.audience(route);
+        if (broadcast != null) broadcast.submit(s.toGame(display), s.toGame(content), audience);
     }
 
-    public void sendChatAsWebhook(String serverName, String playerName, String content) {
-        if (webhookClient != null) {
-            WebhookMessageBuilder mb = new WebhookMessageBuilder();
-            mb.setUsername("[" + serverName + "]" + playerName);
-            mb.setContent(content);
-            webhookClient.send(mb.build());
+    public void sendChatAsWebhook(String serverName, UUID playerId, String playerName, String content) {
+        if (deferUntilOutbound(() -> sendChatAsWebhook(serverName, playerId, playerName, content))) return;
+        Snapshot snap = snapshot;
+        MessageTemplates t = snap.templates();
+        String safe = snap.sanitizer().toDiscord(content);
+        chatOut.increment();
+        // 解決済みの表示だけ使う（未解決なら素の名前で送り、次の発言から反映される）
+        PlayerProfileCache pc = profiles;
+        PlayerProfileCache.Profile prof = (pc != null && playerId != null) ? pc.get(playerId) : null;
+        String name = (prof != null) ? prof.name() : playerName;
+        Outbound o = outbound(snap.routing().forServer(serverName));
+        ChatBatcher chat = o.chat;
+        if (chat != null) {
+            chat.submit(t.chatUsername.render(serverName, name, safe), (prof != null) ? prof.avatarUrl() : null, safe);
         } else {
-            sendPlain("[" + serverName + "]" + playerName + ": " + content);
+            sendPlain(o.route.channelId(), t.chatPlain.render(serverName, name, safe));
         }
     }
 
+    // 参加時に表示（アバター・連携名）を裏で解決しておく
+    public void onPlayerJoin(UUID playerId) {
+        PlayerProfileCache pc = profiles;
+        if (pc != null) pc.refresh(playerId);
+    }
+
+    public void onPlayerQuit(UUID playerId) {
+        PlayerProfileCache pc = profiles;
+        if (pc != null) pc.invalidate(playerId);
+        StatusDashboard d = dashboard;
+        if (d != null) d.markDirty(); // 人数
+    }
+
+    // 連携した Discord ユーザーの表示名。ゲートウェイが無ければ解決しない（短い期限で覚えて後で取り直す）
+    private CompletableFuture<String> discordName(String userId) {
+        CompletableFuture<JDA> ready = jdaReady;
+        JDA j = ready.isCompletedExceptionally() ? null : ready.getNow(null);
+        if (j == null) return CompletableFuture.completedFuture(null);
+        return j.retrieveUserById(userId).submit().thenApply(User::getEffectiveName);
+    }
+
+    public BridgeMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void collectMetrics(BridgeMetrics.Sink out) {
+        for (Outbound o : outbounds.values()) {
+            String route = o.route.name();
+            WebhookSenderPool pool = o.pool;
+            if (pool != null) {
+                out.counter("discordbridge_webhook_sent_total", "Webhook executions accepted by Discord", pool.sent(), "route", route);
+                out.counter("discordbridge_webhook_rate_limited_total", "429 responses", pool.rateLimited(), "route", route);
+                out.counter("discordbridge_webhook_delayed_total", "Sends held back by the local rate-limit bucket", pool.delayed(), "route", route);
+                out.counter("discordbridge_webhook_rejected_total", "Messages rejected because a lane was full", pool.rejected(), "route", route);
+                out.counter("discordbridge_webhook_failed_total", "Messages given up after retries", pool.failed(), "route", route);
+                out.gauge("discordbridge_webhook_parked", "Spooled messages waiting for the webhook to recover", pool.parked(), "route", route);
+                out.latency("discordbridge_webhook_request_seconds", "Webhook HTTP round trip", pool.requestLatency(), "route", route);
+                for (WebhookSenderPool.Lane lane : WebhookSenderPool.Lane.values()) {
+                    String l = lane.name().toLowerCase(Locale.ROOT);
+                    out.gauge("discordbridge_webhook_queue_depth", "Messages waiting per lane", pool.queueDepth(lane), "route", route, "lane", l);
+                    WebhookSenderPool.LaneStats ls = pool.laneStats(lane);
+                    out.counter("discordbridge_webhook_delivered_total", "Messages delivered per lane", ls.delivered(), "route", route, "lane", l);
+                    out.counter("discordbridge_webhook_lane_rejected_total", "Messages rejected because the lane was full", ls.rejected(), "route", route, "lane", l);
+                    out.latency("discordbridge_webhook_delivery_seconds", "Enqueue to delivery per lane", ls.latency(), "route", route, "lane", l);
+                }
+            }
+            ChatBatcher chat = o.chat;
+            if (chat != null) {
+                out.gauge("discordbridge_chat_batch_queue_depth", "Chat lines waiting for the batch window", chat.queueDepth(), "route", route);
+                out.counter("discordbridge_chat_batch_dropped_total", "Chat lines dropped by the batch overflow policy", chat.dropped(), "route", route);
+                out.counter("discordbridge_chat_batch_merged_total", "Chat lines merged into the previous line on overflow", chat.merged(), "route", route);
+                out.counter("discordbridge_chat_batch_flushes_total", "Batch windows flushed", chat.flushes(), "route", route);
+                out.counter("discordbridge_chat_batch_lines_total", "Chat lines flushed (divide by flushes for the average batch size)", chat.linesFlushed(), "route", route);
+                out.counter("discordbridge_chat_batch_messages_total", "Discord messages sent for chat", chat.messagesSent(), "route", route);
+                out.gauge("discordbridge_chat_batch_max_size", "Largest batch since the batcher was created", chat.maxBatchSize(), "route", route);
+                out.latency("discordbridge_chat_batch_flush_seconds", "Oldest line age at flush", chat.flushLatency(), "route", route);
+            }
+            if (o.spool != null) {
+                out.gauge("discordbridge_spool_pending", "Unacknowledged messages in the disk spool", o.spool.pending(), "route", route);
+                out.gauge("discordbridge_spool_bytes", "Disk used by spool segments", o.spool.diskBytes(), "route", route);
+            }
+        }
+        PlainSender p = plain;
+        if (p != null) {
+            out.counter("discordbridge_jda_requests_total", "REST requests made for bot messages", p.requests());
+            out.counter("discordbridge_jda_dropped_total", "Bot messages dropped because a channel queue was full", p.dropped());
+            out.counter("discordbridge_jda_failed_total", "Bot message requests that failed", p.failed());
+            out.gauge("discordbridge_jda_queue_depth", "Bot messages waiting for the previous request", p.queueDepth());
+            out.gauge("discordbridge_jda_channel_cache_size", "Resolved channels held for bot messages", channelCache.size());
+            out.latency("discordbridge_jda_request_seconds", "Bot message REST round trip", p.requestLatency());
+        }
+        PlayerProfileCache pc = profiles;
+        if (pc != null) {
+            out.counter("discordbridge_profile_cache_requests_total", "Profile lookups on the chat path", pc.hits(), "result", "hit");
+            out.counter("discordbridge_profile_cache_requests_total", "Profile lookups on the chat path", pc.negativeHits(), "result", "negative_hit");
+            out.counter("discordbridge_profile_cache_requests_total", "Profile lookups on the chat path", pc.misses(), "result", "miss");
+            out.counter("discordbridge_profile_cache_loads_total", "Background profile resolutions", pc.loads());
+            out.counter("discordbridge_profile_cache_load_failures_total", "Profile resolutions that failed", pc.loadFailures());
+            out.counter("discordbridge_profile_cache_evictions_total", "Profiles evicted by the size limit", pc.evictions());
+            out.gauge("discordbridge_profile_cache_size", "Profiles held", pc.size());
+            out.gauge("discordbridge_profile_cache_hit_ratio", "Share of chat lookups answered from the cache", pc.hitRate());
+        }
+        BroadcastPipeline b = broadcast;
+        if (b != null) {
+            out.counter("discordbridge_broadcast_delivered_total", "Discord messages delivered in game", b.delivered());
+            out.counter("discordbridge_broadcast_dropped_total", "Discord messages dropped because the queue was full", b.dropped());
+            out.counter("discordbridge_broadcast_deferred_ticks_total", "Ticks skipped because a fan-out was still running", b.deferredTicks());
+            out.gauge("discordbridge_broadcast_queue_depth", "Discord messages waiting for the next tick", b.queueDepth());
+            out.latency("discordbridge_broadcast_fanout_seconds", "Time to deliver one tick to all players", b.fanoutLatency());
+        }
+        HealthMonitor h = health;
+        if (h != null) {
+            out.counter("discordbridge_health_probes_total", "Active pings sent", h.probesSent());
+            out.counter("discordbridge_health_probes_failed_total", "Active pings that failed or timed out", h.probesFailed());
+            out.counter("discordbridge_health_probes_skipped_total", "Pings skipped thanks to recent proxy traffic", h.probesSkipped());
+            out.counter("discordbridge_health_passive_signals_total", "Connection results observed by the proxy", h.passiveSignals());
+            for (Map.Entry<String, LatencyHistogram> e : h.pingLatency().entrySet()) {
+                out.latency("discordbridge_health_ping_seconds", "Backend ping latency", e.getValue(), "server", e.getKey());
+            }
+            for (RegisteredServer rs : proxy.getAllServers()) {
+                String name = rs.getServerInfo().getName();
+                Boolean up = h.isOnline(name);
+                if (up != null) out.gauge("discordbridge_backend_up", "1 if the backend answered its last check", up ? 1 : 0, "server", name);
+            }
+        }
+        StatusDashboard d = dashboard;
+        if (d != null) {
+            out.counter("discordbridge_dashboard_edits_total", "Dashboard posts and edits accepted by Discord", d.edits());
+            out.counter("discordbridge_dashboard_skipped_total", "Dashboard updates skipped because nothing changed", d.skipped());
+            out.counter("discordbridge_dashboard_coalesced_total", "Changes folded into a pending dashboard edit", d.coalesced());
+            out.counter("discordbridge_dashboard_failures_total", "Dashboard posts and edits that failed", d.failures());
+            out.counter("discordbridge_dashboard_recreated_total", "Dashboard messages posted again after being deleted", d.recreated());
+        }
+        SlashCommands sc = slash;
+        if (sc != null) {
+            for (Map.Entry<String, Long> e : sc.commandCounts().entrySet()) {
+                out.counter("discordbridge_slash_commands_total", "Slash commands answered", e.getValue(), "command", e.getKey());
+            }
+            out.counter("discordbridge_slash_rate_limited_total", "Slash commands refused by the per-user limit", sc.rateLimited());
+            out.counter("discordbridge_slash_pings_shared_total", "/ping requests that joined a ping already running", sc.pingsShared());
+        }
+        JoinQuitAggregator jq = joinQuit;
+        if (jq != null) {
+            out.counter("discordbridge_join_quit_summaries_total", "Storm summaries sent instead of single embeds", jq.summaries());
+            out.counter("discordbridge_join_quit_cancelled_total", "Join/quit events cancelled inside a storm window", jq.cancelled());
+        }
+        Snapshot snap = snapshot;
+        if (snap != null) {
+            out.counter("discordbridge_sanitizer_masked_total", "Filtered words masked since the last reload", snap.sanitizer().maskedCount());
+        }
+        JDA j = jda;
+        if (j != null && gatewayReadyMs >= 0) {
+            out.gauge("discordbridge_gateway_ready_ms", "Time from connect to READY for the current gateway session", gatewayReadyMs);
+            out.gauge("discordbridge_jda_cached_users", "Users held in the JDA cache", j.getUserCache().size());
+            out.gauge("discordbridge_jda_cached_members", "Members held in the JDA cache", cachedMembers(j));
+        }
+        ClusterCoordinator cl = cluster;
+        if (cl != null) {
+            out.gauge("discordbridge_cluster_leader", "1 if this proxy runs the health checks", cl.isLeader() ? 1 : 0);
+            out.gauge("discordbridge_cluster_peers", "Other proxies heard from recently", cl.peerCount());
+            out.counter("discordbridge_cluster_suppressed_total", "Outbound events left to another proxy", cl.suppressed());
+            out.counter("discordbridge_cluster_relayed_total", "Discord messages relayed to other proxies", cl.relayed());
+            out.counter("discordbridge_cluster_leader_changes_total", "Leadership changes seen by this proxy", cl.leaderChanges());
+        }
+        BridgeExecutors ex = executors;
+        if (ex != null) {
+            out.counter("discordbridge_executor_rejected_total", "Tasks rejected by the bridge thread pools", ex.rejected());
+            out.gauge("discordbridge_executor_queue_depth", "Tasks waiting per pool", ex.ioQueueDepth(), "pool", "io");
+            out.gauge("discordbridge_executor_queue_depth", "Tasks waiting per pool", ex.healthQueueDepth(), "pool", "health");
+            out.gauge("discordbridge_executor_queue_depth", "Tasks waiting per pool", ex.formatQueueDepth(), "pool", "format");
+        }
+    }
+
+    // プロキシが観測した接続結果を死活監視へ渡す（受動シグナル）
+    public void reportBackendReachable(String serverName) {
+        if (health != null) health.onPassiveSuccess(serverName);
+        StatusDashboard d = dashboard;
+        if (d != null) d.markDirty(); // 移動・参加で人数が変わった
+    }
+
+    public void reportBackendUnreachable(String serverName) {
+        if (health != null) health.onPassiveFailure(serverName);
+    }
+
+    public void reportBackendKick(String serverName) {
+        if (health != null) health.requestProbe(serverName);
+    }
+
+    public BridgeExecutors getExecutors() {
+        return executors;
+    }
+
+    public HealthMonitor getHealth() {
+        return health;
+    }
+
+    public StatusHistory getStatusHistory() {
+        return history;
+    }
+
+    public StatusDashboard getDashboard() {
+        return dashboard;
+    }
+
+    public BroadcastPipeline getBroadcast() {
+        return broadcast;
+    }
+
+    public RoutingTable getRouting() {
+        Snapshot snap = snapshot;
+        return (snap != null) ? snap.routing() : null;
+    }
+
+    // 既定ルートの送信プール（Webhook 未設定なら null）
+    public WebhookSenderPool getWebhookPool() {
+        Outbound o = outbounds.get(RoutingTable.DEFAULT);
+        return (o != null) ? o.activePool() : null;
+    }
+
+    public JoinQuitAggregator getJoinQuit() {
+        return joinQuit;
+    }
+
+    public ChatBatcher getChatBatcher() {
+        Outbound o = outbounds.get(RoutingTable.DEFAULT);
+        return (o != null) ? o.chat : null;
+    }
+
     public void sendServerStatusViaWebhook(String serverName, boolean isUp) {
-        String body = isUp ? ":white_check_mark:起動しました。" : ":octagonal_sign:停止しました。";
-        if (webhookClient != null) {
-            WebhookMessageBuilder mb = new WebhookMessageBuilder().setUsername(serverName);
-            WebhookEmbedBuilder eb = new WebhookEmbedBuilder()
-                    .setColor(isUp ? 0x2ECC71 : 0xE74C3C)
-                    .setDescription(body);
-            mb.addEmbeds(eb.build());
-            webhookClient.send(mb.build());
+        if (deferUntilOutbound(() -> sendServerStatusViaWebhook(serverName, isUp))) return;
+        ClusterCoordinator c = cluster;
+        if (c != null) {
+            // 全ノードが同じ遷移を観測しうるので（起動時のウォームアップ・受動シグナル）、1 ノードだけが送る
+            c.claim("status:" + serverName + ":" + (isUp ? "up" : "down"), () -> postServerStatus(serverName, isUp));
+            return;
+        }
+        postServerStatus(serverName, isUp);
+    }
+
+    private void postServerStatus(String serverName, boolean isUp) {
+        StatusDashboard d = dashboard;
+        if (d != null) {
+            d.markDirty();
+            if (!d.alert(isUp)) return; // ダッシュボードの書き換えだけで済ませる
+        }
+        Snapshot snap = snapshot;
+        MessageTemplates t = snap.templates();
+        Outbound o = outbound(snap.routing().forServer(serverName));
+        statusOut.increment();
+        WebhookSenderPool pool = o.activePool();
+        if (pool != null) {
+            pool.send(WebhookSenderPool.Lane.STATUS, t.statusPayload(serverName, isUp));
         } else {
-            sendPlain("[" + serverName + "] " + body);
+            String body = (isUp ? t.statusUp : t.statusDown).render(serverName, null, null);
+            sendPlain(o.route.channelId(), t.statusPlain.render(serverName, null, body), WebhookSenderPool.Lane.STATUS);
         }
     }
 
     public void sendJoinQuitViaWebhook(String playerName, boolean isJoin) {
-        String body = (isJoin ? ":white_check_mark:" : ":octagonal_sign:") + playerName + (isJoin ? "が参加しました。" : "が退出しました。");
-        if (webhookClient != null) {
-            WebhookMessageBuilder mb = new WebhookMessageBuilder().setUsername("Velocity");
-            WebhookEmbedBuilder eb = new WebhookEmbedBuilder()
-                    .setColor(isJoin ? 0x2ECC71 : 0xE74C3C)
-                    .setDescription(body);
-            mb.addEmbeds(eb.build());
-            webhookClient.send(mb.build());
+        if (deferUntilOutbound(() -> sendJoinQuitViaWebhook(playerName, isJoin))) return;
+        joinQuitOut.increment();
+        joinQuit.submit(playerName, isJoin);
+    }
+
+    private void sendJoinQuitNow(String playerName, boolean isJoin) {
+        Snapshot snap = snapshot;
+        MessageTemplates t = snap.templates();
+        String body = (isJoin ? t.join : t.quit).render(null, playerName, null);
+        Outbound o = outbound(snap.routing().defaultRoute());
+        WebhookSenderPool pool = o.activePool();
+        if (pool != null) {
+            pool.send(WebhookSenderPool.Lane.JOIN_QUIT, WebhookPayload.embed(t.joinQuitUsername, isJoin ? t.colorUp : t.colorDown, body));
+        } else {
+            sendPlain(o.route.channelId(), t.joinQuitPlain.render(null, playerName, body), WebhookSenderPool.Lane.JOIN_QUIT);
+        }
+    }
+
+    // 嵐のときの要約。参加と退出を 1 通の 2 embed にまとめる
+    // （ボット経由は通常の本文で 2000 文字までなので、名前の一覧をそれに収まるだけにして 1 行ずつ送る）
+    private void sendJoinQuitSummary(List<String> joined, List<String> left) {
+        Snapshot snap = snapshot;
+        MessageTemplates t = snap.templates();
+        Outbound o = outbound(snap.routing().defaultRoute());
+        WebhookSenderPool pool = o.activePool();
+        int budget = (pool != null ? JoinQuitAggregator.MAX_DESCRIPTION : ChatBatcher.MAX_CONTENT) - 256;
+        List<String> lines = new ArrayList<>();
+        List<WebhookPayload.Embed> embeds = new ArrayList<>();
+        if (!joined.isEmpty()) {
+            String body = t.joinSummary.render(null, null, null, joined.size(), JoinQuitAggregator.names(joined, budget));
+            lines.add(body);
+            embeds.add(new WebhookPayload.Embed(t.colorUp, body));
+        }
+        if (!left.isEmpty()) {
+            String body = t.quitSummary.render(null, null, null, left.size(), JoinQuitAggregator.names(left, budget));
+            lines.add(body);
+            embeds.add(new WebhookPayload.Embed(t.colorDown, body));
+        }
+        if (pool != null) {
+            pool.send(WebhookSenderPool.Lane.JOIN_QUIT, new WebhookPayload(t.joinQuitUsername, null, null, embeds));
         } else {
-            sendPlain("[Velocity] " + body);
-        }
-    }
-
-    public void sendPlain(String text) {
-        if (config == null || config.channelId == null) return;
-        MessageChannelUnion ch = (jda != null) ? jda.getChannelById(MessageChannelUnion.class, config.channelId) : null;
-        if (ch != null && ch.asTextChannel() != null) ch.asTextChannel().sendMessage(text).queue();
-    }
-
-    // 起動時ウォームアップ：現在の稼働状況を取得（停止は通知しない）
-    private void warmupSnapshot() {
-        final CountDownLatch latch = new CountDownLatch(proxy.getAllServers().size());
-        for (RegisteredServer rs : proxy.getAllServers()) {
-            final String name = rs.getServerInfo().getName();
-            rs.ping()
-              .orTimeout(PING_TIMEOUT_SEC, TimeUnit.SECONDS)
-              .handle((pong, err) -> {
-                  boolean isUp = (err == null && pong != null);
-                  lastOnline.put(name, isUp);
-                  downStreak.put(name, isUp ? 0 : 1); // すぐに停止判定しないため1から開始
-                  if (isUp) {
-                      sendServerStatusViaWebhook(name, true); // 起動のみ通知
-                  }
-                  latch.countDown();
-                  return null;
-              });
-        }
-        try { latch.await(PING_TIMEOUT_SEC + 2, TimeUnit.SECONDS); } catch (InterruptedException ignored) { Thread.currentThread().interrupt(); }
-    }
-
-    // 定期監視：タイムアウト＋連続失敗しきい値で停止判定
-    private void tickPing() {
-        proxy.getAllServers().forEach(rs -> {
-            final String name = rs.getServerInfo().getName();
-            rs.ping()
-              .orTimeout(PING_TIMEOUT_SEC, TimeUnit.SECONDS)
-              .handle((pong, err) -> {
-                  boolean isUp = (err == null && pong != null);
-                  Boolean prev = lastOnline.get(name);
-
-                  if (isUp) {
-                      downStreak.put(name, 0);
-                      if (prev == null || !prev) {
-                          lastOnline.put(name, true);
-                          sendServerStatusViaWebhook(name, true);
-                      }
-                  } else {
-                      int base = (prev != null && prev) ? RUNTIME_FAILS : STARTUP_FAILS;
-                      int streak = downStreak.getOrDefault(name, 0) + 1;
-                      downStreak.put(name, streak);
-                      if (streak >= base) {
-                          if (prev == null || prev) {
-                              lastOnline.put(name, false);
-                              sendServerStatusViaWebhook(name, false);
-                          }
-                      }
-                  }
-                  return null;
-              });
+            lines.forEach(l -> sendPlain(o.route.channelId(), t.joinQuitPlain.render(null, null, l), WebhookSenderPool.Lane.JOIN_QUIT));
+        }
+    }
+
+    public void sendPlain(String channelId, String text) {
+        sendPlain(channelId, text, WebhookSenderPool.Lane.CHAT);
+    }
+
+    private void sendPlain(String channelId, String text, WebhookSenderPool.Lane lane) {
+        Snapshot snap = snapshot;
+        if (snap != null && !hasGateway(snap.config())) {
+            sendPlainViaWebhook(snap, channelId, text, lane);
+            return;
+        }
+        CompletableFuture<JDA> ready = jdaReady;
+        if (!ready.isDone()) {
+            // JDA 準備完了まで溜めて、onReady 後にまとめて流す
+            synchronized (plainBacklog) {
+                if (!ready.isDone()) {
+                    if (plainBacklog.size() < STARTUP_BACKLOG_MAX) plainBacklog.add(new Plain(channelId, text));
+                    return;
+                }
+            }
+        }
+        if (channelId == null || ready.isCompletedExceptionally()) return;
+        plainOut.increment();
+        plain.submit(channelId, text);
+    }
+
+    // PlainSender から 1 リクエストずつ呼ばれる。再接続中なら新しい接続の準備完了を待ってから送る
+    private CompletableFuture<?> sendViaRest(String channelId, String content) {
+        return jdaReady.thenCompose(j -> {
+            TextChannel ch = resolveChannel(channelId);
+            if (ch == null) return CompletableFuture.failedFuture(new IllegalStateException("not a text channel the bot can see"));
+            return ch.sendMessage(content).setAllowedMentions(List.of()).submit();
         });
     }
+
+    private TextChannel resolveChannel(String channelId) {
+        TextChannel ch = channelCache.get(channelId);
+        if (ch != null) return ch;
+        // onReady は build() の戻りより先に来ることがあるので jda フィールドではなく jdaReady から取る
+        CompletableFuture<JDA> ready = jdaReady;
+        JDA jda = ready.isCompletedExceptionally() ? null : ready.getNow(null);
+        ch = (jda != null) ? jda.getTextChannelById(channelId) : null;
+        if (ch != null) channelCache.put(channelId, ch);
+        return ch;
+    }
+
+    // ゲートウェイなし：そのチャンネルのルートの Webhook で送る（2000 文字ごとに分ける）。
+    // 他のルートの Webhook は別のチャンネルに出るので使わない。送り先が無ければ捨てる（validate で弾いているので設定の入れ違い時のみ）
+    private void sendPlainViaWebhook(Snapshot snap, String channelId, String text, WebhookSenderPool.Lane lane) {
+        RoutingTable.Route route = (channelId != null) ? snap.routing().forChannel(channelId) : null;
+        WebhookSenderPool pool = (route != null) ? outbound(route).activePool() : null;
+        if (pool == null) {
+            plainDropped.increment();
+            if (channelId != null && unroutableChannels.add(channelId)) {
+                logger.warning("No webhook for channel " + channelId + " and no bot connection; dropping messages for it");
+            }
+            return;
+        }
+        for (String chunk : ChatBatcher.split(text)) pool.send(lane, WebhookPayload.content(null, chunk));
+    }
 }
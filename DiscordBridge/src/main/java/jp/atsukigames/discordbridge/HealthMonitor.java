@@ -0,0 +1,378 @@
+package jp.atsukigames.discordbridge;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// バックエンドの死活監視。
+// サーバーごとに独立した間隔で ping し、開始時刻を間隔内に散らして一斉 ping を避ける。
+// 安定して稼働中のサーバーは間隔を伸ばし、失敗したサーバーは短い間隔で再確認する。
+// 伸ばす上限（maxIntervalSec）がそのまま停止の検知の遅れの上限になるので、既定は 15 秒に抑えている
+// （従来の固定 10 秒間隔と比べ、ping は最大 1/3 減り、検知は最大 5 秒遅れる）。
+// プロキシ上の接続成功・接続失敗（受動シグナル）も取り込み、最近通信のあるサーバーは能動 ping を省く。
+public final class HealthMonitor {
+    private static final long FIRST_DELAY_MS = 5000;
+    private static final long RECONCILE_SEC = 30;
+
+    @FunctionalInterface
+    public interface Listener {
+        void onTransition(String server, boolean isUp);
+    }
+
+    public enum Sample { PING_OK, PING_FAILED, PASSIVE_OK, PASSIVE_FAILED, SKIPPED }
+
+    // 観測 1 件ごとの記録先（履歴用）。latencyNanos は応答のあった ping のみ、それ以外は -1。online は反映後の状態
+    @FunctionalInterface
+    public interface Recorder {
+        void onSample(String server, Sample sample, long latencyNanos, Boolean online, boolean transition);
+    }
+
+    // config.json の healthCheck / healthCheckServers。未指定の項目は既定値か全体設定を引き継ぐ
+    public static class Settings {
+        public Double intervalSec;
+        public Double maxIntervalSec;
+        public Double failIntervalSec;
+        public Double timeoutSec;
+        public Double backoffFactor;
+        public Double jitter;
+        public Integer startupFails;
+        public Integer runtimeFails;
+        public Double passiveWindowSec; // この秒数以内に接続成功があれば ping を省略
+    }
+
+    public record Policy(long intervalMs, long maxIntervalMs, long failIntervalMs, long timeoutMs,
+                         double backoffFactor, double jitter, int startupFails, int runtimeFails,
+                         long passiveWindowMs) {
+        static final Policy DEFAULT = new Policy(10_000, 15_000, 2_000, 3_000, 1.5, 0.2, 2, 1, 30_000);
+
+        static Policy resolve(Settings global, Settings server) {
+            Policy p = DEFAULT.with(global);
+            return p.with(server);
+        }
+
+        private Policy with(Settings s) {
+            if (s == null) return this;
+            return new Policy(
+                    s.intervalSec != null ? sec(s.intervalSec) : intervalMs,
+                    s.maxIntervalSec != null ? sec(s.maxIntervalSec) : maxIntervalMs,
+                    s.failIntervalSec != null ? sec(s.failIntervalSec) : failIntervalMs,
+                    s.timeoutSec != null ? sec(s.timeoutSec) : timeoutMs,
+                    s.backoffFactor != null ? Math.max(1.0, s.backoffFactor) : backoffFactor,
+                    s.jitter != null ? Math.max(0.0, Math.min(0.9, s.jitter)) : jitter,
+                    s.startupFails != null ? Math.max(1, s.startupFails) : startupFails,
+                    s.runtimeFails != null ? Math.max(1, s.runtimeFails) : runtimeFails,
+                    s.passiveWindowSec != null ? Math.max(0, (long) (s.passiveWindowSec * 1000)) : passiveWindowMs);
+        }
+
+        private static long sec(double v) {
+            return Math.max(100, (long) (v * 1000));
+        }
+    }
+
+    // サーバーごとの監視スケジュール
+    private final class Probe {
+        final String name;
+        final Policy policy;
+        long currentIntervalMs;
+        long lastProbeNanos = System.nanoTime();
+        ScheduledFuture<?> task;
+        int seq; // 予約し直したら古い予約は無効
+        boolean inFlight;
+        boolean cancelled;
+
+        Probe(String name, Policy policy) {
+            this.name = name;
+            this.policy = policy;
+            this.currentIntervalMs = policy.intervalMs();
+        }
+
+        synchronized void scheduleIn(long delayMs) {
+            if (cancelled) return;
+            if (task != null) task.cancel(false);
+            final int mySeq = ++seq;
+            task = scheduler.schedule(() -> run(this, mySeq), Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+        }
+
+        // 実行してよければ inFlight を立てて true
+        synchronized boolean begin(int mySeq) {
+            if (cancelled || inFlight || mySeq != seq) return false;
+            inFlight = true;
+            lastProbeNanos = System.nanoTime();
+            return true;
+        }
+
+        synchronized void end() {
+            inFlight = false;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (task != null) task.cancel(false);
+        }
+    }
+
+    private final ProxyServer proxy;
+    private final ScheduledExecutorService scheduler; // 予約と ping 結果の処理はすべてここで動かす
+    private final Settings global;
+    private final Map<String, Settings> perServer;
+    private final Listener listener;
+    private final Recorder recorder; // 無ければ null
+
+    // サーバーごとの状態（更新は ServerHealth 内の CAS のみ）
+    private final ConcurrentMap<String, ServerHealth> states = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Probe> probes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> lastTrafficNanos = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> reconcileTask;
+
+    private final AtomicLong probesSent = new AtomicLong();
+    private final AtomicLong probesFailed = new AtomicLong();
+    private final AtomicLong probesSkipped = new AtomicLong();
+    private final AtomicLong passiveSignals = new AtomicLong();
+    private final AtomicLong staleResults = new AtomicLong();
+    private final ConcurrentMap<String, LatencyHistogram> pingLatency = new ConcurrentHashMap<>(); // 応答のあった ping のみ
+    private final ConcurrentMap<String, Long> lastPingNanos = new ConcurrentHashMap<>();
+
+    public HealthMonitor(ProxyServer proxy, ScheduledExecutorService scheduler, Settings global,
+                         Map<String, Settings> perServer, Listener listener) {
+        this(proxy, scheduler, global, perServer, listener, null);
+    }
+
+    public HealthMonitor(ProxyServer proxy, ScheduledExecutorService scheduler, Settings global,
+                         Map<String, Settings> perServer, Listener listener, Recorder recorder) {
+        this.proxy = proxy;
+        this.scheduler = scheduler;
+        this.global = global;
+        this.perServer = (perServer != null) ? perServer : Map.of();
+        this.listener = listener;
+        this.recorder = recorder;
+    }
+
+    private ServerHealth healthOf(String server) {
+        return states.computeIfAbsent(server, n -> new ServerHealth());
+    }
+
+    public Policy policyFor(String server) {
+        return Policy.resolve(global, perServer.get(server));
+    }
+
+    // 起動時ウォームアップ：現在の稼働状況を取得（停止は通知しない）。全 ping の完了（またはタイムアウト）で完了
+    public CompletableFuture<Void> warmup() {
+        List<CompletableFuture<?>> pings = new ArrayList<>();
+        for (RegisteredServer rs : proxy.getAllServers()) {
+            final String name = rs.getServerInfo().getName();
+            Policy policy = policyFor(name);
+            final ServerHealth h = healthOf(name);
+            final long gen = h.nextGeneration();
+            final long sentNanos = System.nanoTime();
+            pings.add(rs.ping()
+              .orTimeout(policy.timeoutMs(), TimeUnit.MILLISECONDS)
+              .handleAsync((pong, err) -> {
+                  boolean isUp = (err == null && pong != null);
+                  if (isUp) lastPingNanos.put(name, System.nanoTime() - sentNanos);
+                  ServerHealth.Transition t = h.seed(gen, isUp);
+                  if (t == ServerHealth.Transition.UP) {
+                      listener.onTransition(name, true); // 起動のみ通知
+                  }
+                  if (t != ServerHealth.Transition.STALE) {
+                      sample(name, isUp ? Sample.PING_OK : Sample.PING_FAILED, isUp ? System.nanoTime() - sentNanos : -1,
+                              isUp, t == ServerHealth.Transition.UP);
+                  }
+                  return null;
+              }, scheduler));
+        }
+        return CompletableFuture.allOf(pings.toArray(new CompletableFuture<?>[0]));
+    }
+
+    // 監視開始：各サーバーの初回 ping を間隔内に均等＋ジッタで散らす
+    public void start() {
+        List<RegisteredServer> servers = new ArrayList<>(proxy.getAllServers());
+        for (int i = 0; i < servers.size(); i++) {
+            String name = servers.get(i).getServerInfo().getName();
+            Probe probe = new Probe(name, policyFor(name));
+            probes.put(name, probe);
+            long spread = probe.policy.intervalMs() * i / servers.size();
+            probe.scheduleIn(Math.min(FIRST_DELAY_MS, probe.policy.intervalMs()) + spread + jitter(probe.policy, probe.policy.intervalMs()) / 2);
+        }
+        reconcileTask = scheduler.scheduleWithFixedDelay(this::reconcile, RECONCILE_SEC, RECONCILE_SEC, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        if (reconcileTask != null) reconcileTask.cancel(false);
+        probes.values().forEach(Probe::cancel);
+        probes.clear();
+    }
+
+    // 登録・登録解除されたサーバーを監視対象に反映
+    private void reconcile() {
+        List<String> current = new ArrayList<>();
+        for (RegisteredServer rs : proxy.getAllServers()) {
+            String name = rs.getServerInfo().getName();
+            current.add(name);
+            probes.computeIfAbsent(name, n -> {
+                Probe p = new Probe(n, policyFor(n));
+                p.scheduleIn(jitter(p.policy, p.policy.intervalMs()) + p.policy.intervalMs() / 2);
+                return p;
+            });
+        }
+        probes.entrySet().removeIf(e -> {
+            if (current.contains(e.getKey())) return false;
+            e.getValue().cancel();
+            return true;
+        });
+        states.keySet().retainAll(current);
+        lastTrafficNanos.keySet().retainAll(current);
+        pingLatency.keySet().retainAll(current);
+        lastPingNanos.keySet().retainAll(current);
+    }
+
+    private void run(Probe probe, int seq) {
+        if (!probe.begin(seq)) return;
+        RegisteredServer rs = proxy.getServer(probe.name).orElse(null);
+        if (rs == null) {
+            // 一時的に見えないだけかもしれないので監視は続ける（登録解除なら reconcile が片付ける）
+            probe.end();
+            probe.scheduleIn(probe.policy.intervalMs());
+            return;
+        }
+
+        // 最近プロキシ経由の接続に成功していれば ping は省略
+        ServerHealth h = healthOf(probe.name);
+        Long traffic = lastTrafficNanos.get(probe.name);
+        if (traffic != null && Boolean.TRUE.equals(h.state().online())
+                && System.nanoTime() - traffic < TimeUnit.MILLISECONDS.toNanos(probe.policy.passiveWindowMs())) {
+            probesSkipped.incrementAndGet();
+            sample(probe.name, Sample.SKIPPED, -1, Boolean.TRUE, false);
+            probe.end();
+            probe.scheduleIn(nextDelay(probe, true, false));
+            return;
+        }
+
+        probesSent.incrementAndGet();
+        final long gen = h.nextGeneration();
+        final long sentNanos = System.nanoTime();
+        rs.ping()
+          .orTimeout(probe.policy.timeoutMs(), TimeUnit.MILLISECONDS)
+          .handleAsync((pong, err) -> {
+              boolean isUp = (err == null && pong != null);
+              long latency = isUp ? System.nanoTime() - sentNanos : -1;
+              if (!isUp) {
+                  probesFailed.incrementAndGet();
+              } else {
+                  pingLatency.computeIfAbsent(probe.name, k -> new LatencyHistogram()).record(latency);
+                  lastPingNanos.put(probe.name, latency);
+              }
+              boolean changed = record(probe.name, h, gen, isUp, probe.policy, isUp ? Sample.PING_OK : Sample.PING_FAILED, latency);
+              probe.end();
+              probe.scheduleIn(nextDelay(probe, isUp, changed));
+              return null;
+          }, scheduler);
+    }
+
+    // 受動シグナル：プレイヤーがバックエンドへ接続できた
+    public void onPassiveSuccess(String server) {
+        passiveSignals.incrementAndGet();
+        lastTrafficNanos.put(server, System.nanoTime());
+        ServerHealth h = healthOf(server);
+        boolean changed = record(server, h, h.nextGeneration(), true, policyFor(server), Sample.PASSIVE_OK, -1);
+        Probe probe = probes.get(server);
+        if (changed && probe != null) probe.scheduleIn(nextDelay(probe, true, true));
+    }
+
+    // 受動シグナル：バックエンドへの接続自体が失敗した（キック理由なし）
+    public void onPassiveFailure(String server) {
+        passiveSignals.incrementAndGet();
+        lastTrafficNanos.remove(server);
+        ServerHealth h = healthOf(server);
+        record(server, h, h.nextGeneration(), false, policyFor(server), Sample.PASSIVE_FAILED, -1);
+        requestProbe(server);
+    }
+
+    // 停止の兆候（理由付きキックなど）：すぐに能動 ping で確かめる
+    public void requestProbe(String server) {
+        Probe probe = probes.get(server);
+        if (probe == null) return;
+        synchronized (probe) {
+            // 直前に確認済みならそのまま
+            if (probe.inFlight || System.nanoTime() - probe.lastProbeNanos < TimeUnit.MILLISECONDS.toNanos(probe.policy.failIntervalMs())) return;
+            probe.scheduleIn(0);
+        }
+    }
+
+    // 次回までの間隔：安定稼働なら伸ばし、失敗・状態変化なら短くする
+    private long nextDelay(Probe probe, boolean isUp, boolean changed) {
+        Policy p = probe.policy;
+        if (!isUp) {
+            probe.currentIntervalMs = p.intervalMs();
+            return p.failIntervalMs() + jitter(p, p.failIntervalMs());
+        }
+        if (changed) {
+            probe.currentIntervalMs = p.intervalMs();
+        } else {
+            probe.currentIntervalMs = Math.min(p.maxIntervalMs(), (long) (probe.currentIntervalMs * p.backoffFactor()));
+        }
+        return probe.currentIntervalMs + jitter(p, probe.currentIntervalMs);
+    }
+
+    private static long jitter(Policy p, long base) {
+        long range = (long) (base * p.jitter());
+        return range <= 0 ? 0 : ThreadLocalRandom.current().nextLong(-range, range + 1);
+    }
+
+    // 状態機械へ結果を反映。状態が変わって通知したら true（古い世代の結果は捨てる）
+    private boolean record(String name, ServerHealth h, long generation, boolean isUp, Policy policy,
+                           Sample kind, long latencyNanos) {
+        ServerHealth.Transition t = h.apply(generation, isUp, policy.startupFails(), policy.runtimeFails());
+        // 受動シグナルは接続のたびに来るので、履歴には状態が変わったときだけ残す（リングが接続の記録で埋まらないように）
+        boolean passive = kind == Sample.PASSIVE_OK || kind == Sample.PASSIVE_FAILED;
+        if (t != ServerHealth.Transition.STALE && (t != ServerHealth.Transition.NONE || !passive)) {
+            sample(name, kind, latencyNanos, h.state().online(), t != ServerHealth.Transition.NONE);
+        }
+        switch (t) {
+            case UP:
+                listener.onTransition(name, true);
+                return true;
+            case DOWN:
+                listener.onTransition(name, false);
+                return true;
+            case STALE:
+                staleResults.incrementAndGet();
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private void sample(String server, Sample kind, long latencyNanos, Boolean online, boolean transition) {
+        if (recorder != null) recorder.onSample(server, kind, latencyNanos, online, transition);
+    }
+
+    public Boolean isOnline(String server) {
+        ServerHealth h = states.get(server);
+        return (h != null) ? h.state().online() : null;
+    }
+
+    // 直近に応答のあった ping の往復時間。まだ無ければ null
+    public Long lastPingMs(String server) {
+        Long n = lastPingNanos.get(server);
+        return (n != null) ? TimeUnit.NANOSECONDS.toMillis(n) : null;
+    }
+
+    public long probesSent() { return probesSent.get(); }
+    public long probesFailed() { return probesFailed.get(); }
+    public long probesSkipped() { return probesSkipped.get(); }
+    public long passiveSignals() { return passiveSignals.get(); }
+    public long staleResults() { return staleResults.get(); }
+    public Map<String, LatencyHistogram> pingLatency() { return Collections.unmodifiableMap(pingLatency); }
+}
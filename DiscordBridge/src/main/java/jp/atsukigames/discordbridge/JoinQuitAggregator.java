@@ -0,0 +1,137 @@
+package jp.atsukigames.discordbridge;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 参加・退出通知の嵐（プロキシ再起動・バックエンド落ちの直後）を 1 通の要約にまとめる。
+// 直近 windowMs 内のイベント数が stormThreshold 未満なら従来どおり 1 件ずつ送り、
+// それ以上になったらウィンドウ末尾まで溜めて「N人が参加しました: …」として送る。
+// 溜めている間に同じプレイヤーの参加と退出が揃ったら相殺して何も送らない。
+public final class JoinQuitAggregator {
+    public static final int MAX_DESCRIPTION = 4096; // Discord の embed description 上限
+
+    public interface Sink {
+        void single(String player, boolean isJoin);
+
+        void summary(List<String> joined, List<String> left);
+    }
+
+    private final ProxyServer proxy;
+    private final Object plugin;
+    private final Sink sink;
+    private final long windowMs;
+    private final int stormThreshold;
+
+    private final ArrayDeque<Long> recent = new ArrayDeque<>(); // 直近ウィンドウ内のイベント時刻
+    private final Map<String, Integer> pending = new LinkedHashMap<>(); // +1 参加 / -1 退出（0 になったら相殺）
+    private boolean flushScheduled;
+
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong singles = new AtomicLong();
+    private final AtomicLong summaries = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    public JoinQuitAggregator(ProxyServer proxy, Object plugin, Sink sink, long windowMs, int stormThreshold) {
+        this.proxy = proxy;
+        this.plugin = plugin;
+        this.sink = sink;
+        this.windowMs = windowMs;
+        this.stormThreshold = Math.max(1, stormThreshold);
+    }
+
+    public void submit(String player, boolean isJoin) {
+        events.incrementAndGet();
+        if (windowMs <= 0) {
+            singles.incrementAndGet();
+            sink.single(player, isJoin);
+            return;
+        }
+        boolean sendNow = false;
+        boolean schedule = false;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long horizon = now - TimeUnit.MILLISECONDS.toNanos(windowMs);
+            while (!recent.isEmpty() && recent.peekFirst() - horizon < 0) recent.pollFirst();
+            recent.addLast(now);
+
+            if (!flushScheduled && recent.size() < stormThreshold) {
+                sendNow = true;
+            } else {
+                Integer net = pending.merge(player, isJoin ? 1 : -1, Integer::sum);
+                if (net != null && net == 0) {
+                    pending.remove(player);
+                    cancelled.addAndGet(2);
+                }
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    schedule = true;
+                }
+            }
+        }
+        if (sendNow) {
+            singles.incrementAndGet();
+            sink.single(player, isJoin);
+        } else if (schedule) {
+            proxy.getScheduler().buildTask(plugin, this::flush)
+                    .delay(windowMs, TimeUnit.MILLISECONDS)
+                    .schedule();
+        }
+    }
+
+    public void flush() {
+        List<String> joined = new ArrayList<>();
+        List<String> left = new ArrayList<>();
+        synchronized (this) {
+            flushScheduled = false;
+            for (Map.Entry<String, Integer> e : pending.entrySet()) {
+                // 参加→退出→参加のように奇数回動いた場合は最後の向きだけ残る
+                (e.getValue() > 0 ? joined : left).add(e.getKey());
+            }
+            pending.clear();
+        }
+        if (joined.isEmpty() && left.isEmpty()) return;
+        if (joined.size() + left.size() == 1) {
+            singles.incrementAndGet();
+            if (joined.isEmpty()) sink.single(left.get(0), false);
+            else sink.single(joined.get(0), true);
+            return;
+        }
+        summaries.incrementAndGet();
+        sink.summary(joined, left);
+    }
+
+    // 名前を description に収まるだけ並べ、残りは「他N人」にする
+    public static String names(List<String> players, int budget) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < players.size(); i++) {
+            String name = players.get(i);
+            String rest = "…他" + (players.size() - i) + "人";
+            if (sb.length() + 2 + name.length() + rest.length() > budget) {
+                sb.append(sb.length() > 0 ? " " : "").append(rest);
+                break;
+            }
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(name);
+        }
+        return sb.toString();
+    }
+
+    public long events() { return events.get(); }
+    public long singles() { return singles.get(); }
+    public long summaries() { return summaries.get(); }
+    public long cancelled() { return cancelled.get(); }
+
+    // 送信回数（1,000 イベントあたりの Discord 呼び出し数の計測用）
+    public long discordCalls() { return singles.get() + summaries.get(); }
+
+    public synchronized int pendingPlayers() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,65 @@
+package jp.atsukigames.discordbridge;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 所要時間（ナノ秒）のヒストグラム。HdrHistogram と同じく 2 の冪ごとに 64 個の等幅バケットを持つ対数線形配置で、
+// 相対誤差 1.6% 以内のパーセンタイルを固定メモリ・ロックなしで出す。
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 7;
+    private static final int SUB_COUNT = 1 << SUB_BITS;  // 128
+    private static final int HALF = SUB_COUNT >> 1;      // 64
+    private static final int BUCKETS = SUB_COUNT + (64 - SUB_BITS) * HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sumNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(index(nanos));
+        total.incrementAndGet();
+        sumNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    static int index(long v) {
+        if (v < SUB_COUNT) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - (SUB_BITS - 1); // 上位 7 ビットを残す
+        return SUB_COUNT + (shift - 1) * HALF + (int) (v >>> shift) - HALF;
+    }
+
+    // バケットの代表値（上端）
+    static long valueAt(int index) {
+        if (index < SUB_COUNT) return index;
+        int shift = (index - SUB_COUNT) / HALF + 1;
+        long sub = (index - SUB_COUNT) % HALF + HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    public long sumNanos() {
+        return sumNanos.get();
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    // q は 0..1。記録が無ければ 0
+    public long percentileNanos(double q) {
+        long n = total.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(valueAt(i), maxNanos.get());
+        }
+        return maxNanos.get();
+    }
+}
@@ -0,0 +1,194 @@
+package jp.atsukigames.discordbridge;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Discord へ送る文言のテンプレート。設定読み込み時に 1 回だけ「固定文字列／差し込み」の列へ分解し、
+// 送信時はスレッドごとの StringBuilder へ書き出すだけにする。
+// 差し込み: %server% %player% %message% %count% %players%（%% はそのまま %）
+public final class MessageTemplates {
+    // config.json の messages
+    public static class Settings {
+        public String chatUsername = "[%server%]%player%";
+        public String chatPlain = "[%server%]%player%: %message%";
+        public String statusUp = ":white_check_mark:起動しました。";
+        public String statusDown = ":octagonal_sign:停止しました。";
+        public String statusPlain = "[%server%] %message%";
+        public String join = ":white_check_mark:%player%が参加しました。";
+        public String quit = ":octagonal_sign:%player%が退出しました。";
+        public String joinSummary = ":white_check_mark:%count%人が参加しました: %players%";
+        public String quitSummary = ":octagonal_sign:%count%人が退出しました: %players%";
+        public String joinQuitUsername = "Velocity";
+        public String joinQuitPlain = "[Velocity] %message%";
+        public String colorUp = "#2ECC71";
+        public String colorDown = "#E74C3C";
+    }
+
+    private enum Var { SERVER, PLAYER, MESSAGE, COUNT, PLAYERS }
+
+    public static final class Template {
+        private final String source;
+        private final Object[] segments; // String は固定文字列、Var は差し込み
+        private final String constant;   // 差し込みが無ければ完成済みの文字列
+        private final int literalLength;
+
+        private Template(String source) {
+            this.source = source;
+            List<Object> out = new ArrayList<>();
+            StringBuilder lit = new StringBuilder();
+            int i = 0;
+            while (i < source.length()) {
+                char c = source.charAt(i);
+                int end = (c == '%') ? source.indexOf('%', i + 1) : -1;
+                if (end < 0) {
+                    lit.append(c);
+                    i++;
+                    continue;
+                }
+                if (end == i + 1) { // %%
+                    lit.append('%');
+                    i = end + 1;
+                    continue;
+                }
+                Var v = var(source.substring(i + 1, end));
+                if (v == null) { // 未知の名前は文字どおり残す
+                    lit.append(c);
+                    i++;
+                    continue;
+                }
+                if (lit.length() > 0) {
+                    out.add(lit.toString());
+                    lit.setLength(0);
+                }
+                out.add(v);
+                i = end + 1;
+            }
+            if (lit.length() > 0) out.add(lit.toString());
+            this.segments = out.toArray();
+            int len = 0;
+            for (Object s : segments) if (s instanceof String) len += ((String) s).length();
+            this.literalLength = len;
+            this.constant = (segments.length == 0) ? ""
+                    : (segments.length == 1 && segments[0] instanceof String) ? (String) segments[0] : null;
+        }
+
+        private static Var var(String name) {
+            try {
+                return Var.valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        public boolean isConstant() {
+            return constant != null;
+        }
+
+        public String source() {
+            return source;
+        }
+
+        public void appendTo(StringBuilder sb, String server, String player, String message, int count, String players) {
+            sb.ensureCapacity(sb.length() + literalLength + 32);
+            for (Object s : segments) {
+                if (s instanceof String) {
+                    sb.append((String) s);
+                    continue;
+                }
+                // 呼び出し側が渡さない差し込み（状態通知の %player% など）は空にする。"null" とは出さない
+                switch ((Var) s) {
+                    case SERVER: if (server != null) sb.append(server); break;
+                    case PLAYER: if (player != null) sb.append(player); break;
+                    case MESSAGE: if (message != null) sb.append(message); break;
+                    case COUNT: sb.append(count); break;
+                    case PLAYERS: if (players != null) sb.append(players); break;
+                }
+            }
+        }
+
+        public String render(String server, String player, String message) {
+            return render(server, player, message, 0, null);
+        }
+
+        public String render(String server, String player, String message, int count, String players) {
+            if (constant != null) return constant;
+            StringBuilder sb = BUFFER.get();
+            sb.setLength(0);
+            appendTo(sb, server, player, message, count, players);
+            String s = sb.toString();
+            if (sb.capacity() > MAX_RETAINED) BUFFER.remove(); // 巨大なメッセージの後はバッファを手放す
+            return s;
+        }
+    }
+
+    private static final int MAX_RETAINED = 8 * 1024;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    public static Template compile(String source) {
+        return new Template(source == null ? "" : source);
+    }
+
+    public final Template chatUsername;
+    public final Template chatPlain;
+    public final Template statusUp;
+    public final Template statusDown;
+    public final Template statusPlain;
+    public final Template join;
+    public final Template quit;
+    public final Template joinSummary;
+    public final Template quitSummary;
+    public final Template joinQuitPlain;
+    public final String joinQuitUsername;
+    public final int colorUp;
+    public final int colorDown;
+
+    // 状態通知の embed はサーバー名と向きだけで決まるので使い回す
+    private final Map<String, WebhookPayload> statusPayloads = new ConcurrentHashMap<>();
+
+    public MessageTemplates(Settings s) {
+        if (s == null) s = new Settings();
+        Settings d = new Settings();
+        this.chatUsername = compile(or(s.chatUsername, d.chatUsername));
+        this.chatPlain = compile(or(s.chatPlain, d.chatPlain));
+        this.statusUp = compile(or(s.statusUp, d.statusUp));
+        this.statusDown = compile(or(s.statusDown, d.statusDown));
+        this.statusPlain = compile(or(s.statusPlain, d.statusPlain));
+        this.join = compile(or(s.join, d.join));
+        this.quit = compile(or(s.quit, d.quit));
+        this.joinSummary = compile(or(s.joinSummary, d.joinSummary));
+        this.quitSummary = compile(or(s.quitSummary, d.quitSummary));
+        this.joinQuitPlain = compile(or(s.joinQuitPlain, d.joinQuitPlain));
+        this.joinQuitUsername = or(s.joinQuitUsername, d.joinQuitUsername);
+        this.colorUp = color(s.colorUp, 0x2ECC71);
+        this.colorDown = color(s.colorDown, 0xE74C3C);
+    }
+
+    public WebhookPayload statusPayload(String server, boolean isUp) {
+        String key = (isUp ? "+" : "-") + server;
+        WebhookPayload cached = statusPayloads.get(key);
+        if (cached != null) return cached;
+        WebhookPayload p = WebhookPayload.embed(server, isUp ? colorUp : colorDown,
+                (isUp ? statusUp : statusDown).render(server, null, null));
+        if (statusPayloads.size() < 1024) statusPayloads.put(key, p);
+        return p;
+    }
+
+    private static String or(String v, String def) {
+        return (v == null) ? def : v;
+    }
+
+    private static int color(String hex, int def) {
+        if (hex == null) return def;
+        String h = hex.trim();
+        if (h.startsWith("#")) h = h.substring(1);
+        else if (h.startsWith("0x") || h.startsWith("0X")) h = h.substring(2);
+        try {
+            return Integer.parseInt(h, 16) & 0xFFFFFF;
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package jp.atsukigames.discordbridge;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+
+// Prometheus 用の /metrics。既定では 127.0.0.1 にだけ開く（JDK 同梱の HttpServer を使い、依存は増やさない）
+public final class MetricsServer {
+    private final BridgeMetrics metrics;
+    private HttpServer server;
+
+    public MetricsServer(BridgeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void start(String bind, int port, Executor executor) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(bind, port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!"GET".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = metrics.prometheus().getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    public void stop() {
+        if (server != null) server.stop(0);
+    }
+}
@@ -0,0 +1,290 @@
+package jp.atsukigames.discordbridge;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+// 送信待ちメッセージの追記専用ディスクスプール（dataDirectory/spool 配下）。
+// 固定長のセグメントファイルをメモリマップし、送信前に DATA、送信完了後に ACK を追記する。
+// 再起動時は全セグメントを（マップせずに）読み、ACK の無い DATA を順番どおりに返す。
+// 書き終えたセグメントのマップはすぐに解放する（Windows ではマップ中のファイルを削除できない）。
+// 先頭（最古）のセグメントから、未 ACK が無くなったものを削除していく（ACK は必ず DATA より後ろに書かれるため、
+// 先頭から消す限り ACK だけが先に消えて再送が重複することはない）。
+//
+// レコード: [int 長さ][byte 種別][long 連番][本文]。長さ 0 は書き込み終端。
+public final class OutboundSpool {
+    public record Entry(long seq, WebhookSenderPool.Lane lane, String json) {}
+
+    private static final byte DATA = 1;
+    private static final byte ACK = 2;
+    private static final int HEADER = 4 + 1 + 8;
+    private static final String PREFIX = "seg-";
+    private static final String SUFFIX = ".log";
+
+    private static final class Segment {
+        final long id;
+        final Path path;
+        FileChannel channel;  // 書き込み中のセグメントのみ
+        MappedByteBuffer buf; // 同上
+        int live;             // 未 ACK の DATA 数
+
+        Segment(long id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final Logger logger;
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final Map<Long, Segment> owner = new HashMap<>(); // 未 ACK の連番 -> 所属セグメント
+    private Segment active;
+    private long nextSeq = 1;
+    private boolean closed; // close() 後に遅れて届いた append / ack は何もしない
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong acked = new AtomicLong();
+    private final AtomicLong droppedByCap = new AtomicLong();
+
+    public OutboundSpool(Path dir, int segmentBytes, long maxBytes, Logger logger) {
+        this.dir = dir;
+        this.segmentBytes = Math.max(64 * 1024, segmentBytes);
+        this.maxBytes = Math.max(this.segmentBytes * 2L, maxBytes);
+        this.logger = logger;
+    }
+
+    // 既存セグメントを読み込み、未 ACK のエントリを連番順に返す
+    public synchronized List<Entry> open() throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            ds.forEach(files::add);
+        }
+        for (Path f : files) {
+            String n = f.getFileName().toString();
+            try {
+                long id = Long.parseLong(n.substring(PREFIX.length(), n.length() - SUFFIX.length()));
+                segments.put(id, new Segment(id, f));
+            } catch (NumberFormatException ignored) {}
+        }
+
+        Map<Long, Entry> pending = new LinkedHashMap<>();
+        int lastEnd = 0;
+        for (Segment seg : segments.values()) {
+            lastEnd = scan(seg, pending);
+        }
+        for (Map.Entry<Long, Entry> e : pending.entrySet()) {
+            Segment seg = owner.get(e.getKey());
+            if (seg != null) seg.live++;
+        }
+
+        Segment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (last == null || lastEnd + 4 > segmentBytes) {
+            roll();
+        } else {
+            mapForWrite(last);
+            last.buf.position(lastEnd);
+            active = last;
+        }
+        compact();
+        return new ArrayList<>(pending.values());
+    }
+
+    // 1 セグメントを読み、DATA/ACK を pending に反映。書き込み終端の位置を返す
+    private int scan(Segment seg, Map<Long, Entry> pending) throws IOException {
+        try (FileChannel ch = FileChannel.open(seg.path, StandardOpenOption.READ)) {
+            ByteBuffer b = ByteBuffer.allocate((int) Math.min(ch.size(), Integer.MAX_VALUE));
+            while (b.hasRemaining() && ch.read(b) >= 0) {}
+            b.flip();
+            while (b.remaining() >= HEADER) {
+                int start = b.position();
+                int len = b.getInt();
+                if (len < HEADER - 4 || len > b.remaining()) {
+                    b.position(start);
+                    break; // 終端、または書きかけのレコード
+                }
+                byte type = b.get();
+                long seq = b.getLong();
+                byte[] body = new byte[len - (HEADER - 4)];
+                b.get(body);
+                nextSeq = Math.max(nextSeq, seq + 1);
+                if (type == DATA && body.length >= 1) {
+                    WebhookSenderPool.Lane[] lanes = WebhookSenderPool.Lane.values();
+                    WebhookSenderPool.Lane lane = (body[0] >= 0 && body[0] < lanes.length) ? lanes[body[0]] : WebhookSenderPool.Lane.CHAT;
+                    String json = new String(body, 1, body.length - 1, StandardCharsets.UTF_8);
+                    pending.put(seq, new Entry(seq, lane, json));
+                    owner.put(seq, seg);
+                } else if (type == ACK) {
+                    pending.remove(seq);
+                    owner.remove(seq);
+                }
+            }
+            return b.position();
+        }
+    }
+
+    // 送信前に記録。書けなければ -1（スプール無しで送る）
+    public synchronized long append(WebhookSenderPool.Lane lane, String json) {
+        if (closed) return -1;
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        int len = HEADER + 1 + body.length;
+        if (len > segmentBytes) return -1;
+        try {
+            ensureSpace(len);
+        } catch (IOException e) {
+            logger.warning("Spool write failed: " + e.getMessage());
+            return -1;
+        }
+        long seq = nextSeq++;
+        MappedByteBuffer b = active.buf;
+        b.putInt(len - 4).put(DATA).putLong(seq).put((byte) lane.ordinal()).put(body);
+        owner.put(seq, active);
+        active.live++;
+        appended.incrementAndGet();
+        return seq;
+    }
+
+    // 送信完了（または二度と送れない）ものを記録
+    public synchronized void ack(long seq) {
+        if (seq <= 0 || closed) return; // 閉じた後は次の起動で送り直す
+        Segment seg = owner.remove(seq);
+        if (seg == null) return; // 容量超過で既に捨てたもの
+        try {
+            ensureSpace(HEADER);
+            active.buf.putInt(HEADER - 4).put(ACK).putLong(seq);
+        } catch (IOException e) {
+            logger.warning("Spool write failed: " + e.getMessage());
+        }
+        seg.live--;
+        acked.incrementAndGet();
+        compact();
+    }
+
+    private void ensureSpace(int len) throws IOException {
+        if (active == null || active.buf == null || active.buf.remaining() < len + 4) roll();
+    }
+
+    private void roll() throws IOException {
+        if (active != null) releaseWriter(active);
+        long id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Segment seg = new Segment(id, dir.resolve(String.format("%s%016d%s", PREFIX, id, SUFFIX)));
+        segments.put(id, seg);
+        mapForWrite(seg);
+        active = seg;
+        enforceCap();
+        compact();
+    }
+
+    private void mapForWrite(Segment seg) throws IOException {
+        seg.channel = FileChannel.open(seg.path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        seg.buf = seg.channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+    }
+
+    private static void releaseWriter(Segment seg) {
+        if (seg.buf != null) {
+            seg.buf.force();
+            unmap(seg.buf);
+        }
+        seg.buf = null;
+        try {
+            if (seg.channel != null) seg.channel.close();
+        } catch (IOException ignored) {}
+        seg.channel = null;
+    }
+
+    // マップの即時解放（標準 API が無いため Unsafe.invokeCleaner を反射で呼ぶ）。使えなければ GC 任せ
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method m = null;
+        Object u = null;
+        try {
+            Class<?> c = Class.forName("sun.misc.Unsafe");
+            Field f = c.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            u = f.get(null);
+            m = c.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            m = null;
+        }
+        INVOKE_CLEANER = m;
+        UNSAFE = u;
+    }
+
+    private static void unmap(MappedByteBuffer buf) {
+        if (INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buf);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {}
+    }
+
+    // 先頭から、未 ACK の無い（書き込み中でない）セグメントを削除
+    private void compact() {
+        while (!segments.isEmpty()) {
+            Segment head = segments.firstEntry().getValue();
+            if (head == active || head.live > 0) return;
+            delete(head);
+        }
+    }
+
+    // 上限を超えたら古いセグメントから未送信ごと捨てる
+    private void enforceCap() {
+        while ((long) segments.size() * segmentBytes > maxBytes && segments.size() > 1) {
+            Segment head = segments.firstEntry().getValue();
+            if (head.live > 0) {
+                droppedByCap.addAndGet(head.live);
+                logger.warning("Spool size cap reached; dropping " + head.live + " unsent message(s)");
+                owner.values().removeIf(s -> s == head);
+            }
+            delete(head);
+        }
+    }
+
+    private void delete(Segment seg) {
+        segments.remove(seg.id);
+        releaseWriter(seg);
+        try {
+            Files.deleteIfExists(seg.path);
+        } catch (IOException e) {
+            logger.warning("Failed to delete spool segment " + seg.path + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        closed = true;
+        if (active != null) releaseWriter(active);
+        active = null;
+    }
+
+    public synchronized int pending() {
+        return owner.size();
+    }
+
+    public synchronized long diskBytes() {
+        return (long) segments.size() * segmentBytes;
+    }
+
+    public long appended() { return appended.get(); }
+    public long acked() { return acked.get(); }
+    public long droppedByCap() { return droppedByCap.get(); }
+}
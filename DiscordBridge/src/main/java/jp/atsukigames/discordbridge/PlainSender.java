@@ -0,0 +1,158 @@
+package jp.atsukigames.discordbridge;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+// ボット経由（Webhook なし）の送信。チャンネルごとに送信中は 1 件だけにして順序を守り、
+// 応答待ちの間に溜まった行は 2000 文字に収まるだけ 1 通へまとめる。混むほど 1 リクエストあたりの行数が増える
+public final class PlainSender {
+    @FunctionalInterface
+    public interface Transport {
+        CompletableFuture<?> send(String channelId, String content);
+    }
+
+    public record Line(String channelId, String text) {}
+
+    private static final class Channel {
+        final String id;
+        final ArrayDeque<String> queue = new ArrayDeque<>(); // this で保護
+        boolean inFlight;                                     // this で保護
+
+        Channel(String id) {
+            this.id = id;
+        }
+    }
+
+    private final Transport transport;
+    private final Executor executor;
+    private final int maxQueue;
+    private final Logger logger;
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong linesSent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+    public PlainSender(Transport transport, Executor executor, int maxQueue, Logger logger) {
+        this.transport = transport;
+        this.executor = executor;
+        this.maxQueue = Math.max(1, maxQueue);
+        this.logger = logger;
+    }
+
+    public void submit(String channelId, String text) {
+        Channel ch = channels.computeIfAbsent(channelId, Channel::new);
+        boolean start = false;
+        synchronized (ch) {
+            for (String chunk : ChatBatcher.split(text)) {
+                if (ch.queue.size() >= maxQueue) {
+                    ch.queue.pollFirst();
+                    dropped.incrementAndGet();
+                }
+                ch.queue.addLast(chunk);
+            }
+            if (!ch.inFlight) {
+                ch.inFlight = true;
+                start = true;
+            }
+        }
+        if (start) pump(ch);
+    }
+
+    // 先頭から 2000 文字に収まるだけ取り出して送り、応答が来たら続きを送る
+    private void pump(Channel ch) {
+        StringBuilder sb = new StringBuilder();
+        int lines = 0;
+        synchronized (ch) {
+            String next;
+            while ((next = ch.queue.peekFirst()) != null) {
+                if (sb.length() > 0 && sb.length() + 1 + next.length() > ChatBatcher.MAX_CONTENT) break;
+                if (sb.length() > 0) sb.append('\n');
+                sb.append(ch.queue.pollFirst());
+                lines++;
+            }
+            if (lines == 0) {
+                ch.inFlight = false;
+                ch.notifyAll();
+                return;
+            }
+        }
+        requests.incrementAndGet();
+        linesSent.addAndGet(lines);
+        final long started = System.nanoTime();
+        CompletableFuture<?> sent;
+        try {
+            sent = transport.send(ch.id, sb.toString());
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        // 応答スレッド（JDA の REST スレッドなど）で次を組み立てない
+        sent.whenComplete((r, ex) -> {
+            requestLatency.record(System.nanoTime() - started);
+            if (ex != null) {
+                failed.incrementAndGet();
+                logger.warning("Failed to send a message to channel " + ch.id + ": " + ex.getMessage());
+            }
+            try {
+                executor.execute(() -> pump(ch));
+            } catch (RejectedExecutionException e) {
+                // 停止中などでプールが受け付けなければここで続ける（inFlight を立てたまま止めない）
+                pump(ch);
+            }
+        });
+    }
+
+    // 送信待ちの行を取り出して返す（送信中の 1 件は残る）。再接続の間、呼び出し元で預かって送り直すため
+    public List<Line> takeQueued() {
+        List<Line> out = new ArrayList<>();
+        for (Channel ch : channels.values()) {
+            synchronized (ch) {
+                for (String text : ch.queue) out.add(new Line(ch.id, text));
+                ch.queue.clear();
+            }
+        }
+        return out;
+    }
+
+    // 全チャンネルの送信待ち・送信中が無くなるまで待つ
+    public boolean awaitDrain(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        for (Channel ch : channels.values()) {
+            synchronized (ch) {
+                while (ch.inFlight || !ch.queue.isEmpty()) {
+                    long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (left <= 0) return false;
+                    ch.wait(left);
+                }
+            }
+        }
+        return true;
+    }
+
+    public int queueDepth() {
+        int n = 0;
+        for (Channel ch : channels.values()) {
+            synchronized (ch) {
+                n += ch.queue.size();
+            }
+        }
+        return n;
+    }
+
+    public long requests() { return requests.get(); }
+    public long linesSent() { return linesSent.get(); }
+    public long dropped() { return dropped.get(); }
+    public long failed() { return failed.get(); }
+    public LatencyHistogram requestLatency() { return requestLatency; }
+}
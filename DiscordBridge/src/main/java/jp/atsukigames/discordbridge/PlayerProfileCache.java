@@ -0,0 +1,209 @@
+package jp.atsukigames.discordbridge;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.util.GameProfile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+// プレイヤーごとの Webhook 表示（名前・スキンのアバター・連携した Discord の名前）のキャッシュ。
+// 参加時に裏で解決しておき、チャットの送信経路では引くだけ（待たない）。無ければ今回は素の名前で送り、裏で解決する。
+// 件数上限（最も長く使われていないものから追い出す）と有効期限つき。解決できなかった結果も短い期限で覚えておく
+public final class PlayerProfileCache {
+    // config.json の profiles
+    public static class Settings {
+        public boolean enabled = true;
+        // %uuid%（ハイフンなし）%player% %skin%（スキンのテクスチャ ID。無ければ UUID）。空ならアバターを付けない
+        public String avatarUrl = "https://mc-heads.net/avatar/%skin%/64";
+        public Map<String, String> linkedAccounts = new HashMap<>(); // プレイヤー UUID -> Discord ユーザー ID
+        public String linkedFormat = "%player% (%discord%)";        // 連携済みプレイヤーの %player%
+        public int maxSize = 2000;
+        public long ttlSec = 1800;
+        public long negativeTtlSec = 300;
+    }
+
+    // complete=false は一部を解決できなかったもの（Discord 側の取得失敗など）。短い期限で取り直す
+    public record Profile(String name, String avatarUrl, boolean complete) {}
+
+    private record Entry(Profile profile, long expiresNanos) {}
+
+    private final Settings settings;
+    private final ProxyServer proxy;
+    private final Function<String, CompletableFuture<String>> discordNames; // Discord ユーザー ID -> 表示名
+    private final Executor executor;
+    private final Logger logger;
+
+    private final Map<UUID, Entry> entries; // 自身で保護。アクセス順
+    private final ConcurrentMap<UUID, Object> loading = new ConcurrentHashMap<>(); // 解決中（破棄された解決の結果は捨てる）
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public PlayerProfileCache(Settings settings, ProxyServer proxy, Function<String, CompletableFuture<String>> discordNames,
+                              Executor executor, Logger logger) {
+        this.settings = settings;
+        this.proxy = proxy;
+        this.discordNames = discordNames;
+        this.executor = executor;
+        this.logger = logger;
+        final int max = Math.max(1, settings.maxSize);
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entry> eldest) {
+                if (size() <= max) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    // 送信経路から呼ぶ。解決済みならそれを、無い・期限切れなら（あれば古い値を返しつつ）裏で解決を始める
+    public Profile get(UUID id) {
+        Entry e;
+        synchronized (entries) {
+            e = entries.get(id);
+        }
+        if (e != null && System.nanoTime() - e.expiresNanos() < 0) {
+            if (e.profile() == null) negativeHits.increment();
+            else hits.increment();
+            return e.profile();
+        }
+        misses.increment();
+        refresh(id);
+        return (e != null) ? e.profile() : null;
+    }
+
+    // 参加時など。解決中なら何もしない
+    public void refresh(UUID id) {
+        Object token = new Object();
+        if (loading.putIfAbsent(id, token) != null) return;
+        executor.execute(() -> {
+            CompletableFuture<Profile> f;
+            try {
+                f = load(id);
+            } catch (RuntimeException ex) {
+                f = CompletableFuture.failedFuture(ex);
+            }
+            f.whenComplete((p, ex) -> {
+                if (ex != null) {
+                    loadFailures.increment();
+                    logger.fine("Failed to resolve profile for " + id + ": " + ex);
+                }
+                if (!loading.remove(id, token)) return; // 途中で invalidate された
+                Profile profile = (ex == null) ? p : null;
+                long ttl = (profile != null && profile.complete()) ? settings.ttlSec : settings.negativeTtlSec;
+                Entry entry = new Entry(profile, System.nanoTime() + TimeUnit.SECONDS.toNanos(ttl));
+                synchronized (entries) {
+                    entries.put(id, entry);
+                }
+            });
+        });
+    }
+
+    // 退出時
+    public void invalidate(UUID id) {
+        loading.remove(id);
+        synchronized (entries) {
+            entries.remove(id);
+        }
+    }
+
+    private CompletableFuture<Profile> load(UUID id) {
+        loads.increment();
+        Player p = proxy.getPlayer(id).orElse(null);
+        if (p == null) return CompletableFuture.completedFuture(null); // もういない
+        String name = p.getUsername();
+        String avatar = avatarUrl(settings.avatarUrl, id, name, p.getGameProfile());
+        String linked = settings.linkedAccounts.get(id.toString());
+        if (linked == null || linked.isBlank()) return CompletableFuture.completedFuture(new Profile(name, avatar, true));
+        return discordNames.apply(linked).handle((discord, ex) -> {
+            if (ex != null || discord == null) return new Profile(name, avatar, false);
+            String safe = webhookSafe(discord);
+            if (safe.isEmpty()) return new Profile(name, avatar, true);
+            return new Profile(settings.linkedFormat.replace("%player%", name).replace("%discord%", safe), avatar, true);
+        });
+    }
+
+    // Webhook の username に "discord" / "clyde" が入っていると Discord が 400 で拒否するので取り除く（大文字小文字を問わない）。
+    // 取り除いた結果また現れる（"disclydecord" など）ことがあるので、無くなるまで繰り返す
+    static String webhookSafe(String discordName) {
+        String s = discordName;
+        while (true) {
+            String lower = s.toLowerCase(Locale.ROOT);
+            int at = lower.indexOf("discord");
+            int len = 7;
+            int clyde = lower.indexOf("clyde");
+            if (clyde >= 0 && (at < 0 || clyde < at)) {
+                at = clyde;
+                len = 5;
+            }
+            if (at < 0) return s.strip();
+            s = s.substring(0, at) + s.substring(at + len);
+        }
+    }
+
+    static String avatarUrl(String template, UUID id, String name, GameProfile profile) {
+        if (template == null || template.isEmpty()) return null;
+        String uuid = id.toString().replace("-", "");
+        String skin = skinId(profile);
+        return template.replace("%uuid%", uuid).replace("%player%", name).replace("%skin%", skin != null ? skin : uuid);
+    }
+
+    // textures プロパティ（Base64 の JSON）からスキン URL の末尾（テクスチャ ID）を取り出す。
+    // オフラインモードやスキン差し替えのプラグインがあっても、実際に見えているスキンの顔になる
+    static String skinId(GameProfile profile) {
+        if (profile == null) return null;
+        for (GameProfile.Property prop : profile.getProperties()) {
+            if (!"textures".equals(prop.getName())) continue;
+            try {
+                String json = new String(Base64.getDecoder().decode(prop.getValue()), StandardCharsets.UTF_8);
+                JsonObject skin = JsonParser.parseString(json).getAsJsonObject()
+                        .getAsJsonObject("textures").getAsJsonObject("SKIN");
+                String url = skin.get("url").getAsString();
+                return url.substring(url.lastIndexOf('/') + 1);
+            } catch (RuntimeException e) { // 壊れた・想定外の形
+                return null;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long hits() { return hits.sum(); }
+    public long negativeHits() { return negativeHits.sum(); }
+    public long misses() { return misses.sum(); }
+    public long loads() { return loads.sum(); }
+    public long loadFailures() { return loadFailures.sum(); }
+    public long evictions() { return evictions.sum(); }
+
+    public double hitRate() {
+        long h = hits.sum() + negativeHits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+}
@@ -0,0 +1,123 @@
+package jp.atsukigames.discordbridge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+// バックエンドサーバー ⇔ Discord チャンネル／Webhook の対応表（不変）。
+// チャットのたびに引くので、設定読み込み時にサーバー名・チャンネル ID からの逆引きを作っておき、
+// 再読み込み時は表ごと差し替える。どのルートにも載らないサーバーは既定ルート（channelId / webhookUrl）へ流れる。
+public final class RoutingTable {
+    public static final String DEFAULT = "default";
+
+    // config.json の routes[]。servers にはサーバー名か serverGroups のグループ名を書ける
+    public static class RouteSettings {
+        public String name;
+        public List<String> servers;
+        public String channelId;
+        public String webhookUrl;
+        public List<String> webhookUrls;
+    }
+
+    public record Route(String name, Set<String> servers, String channelId, List<String> webhookUrls) {
+        public boolean isDefault() {
+            return DEFAULT.equals(name);
+        }
+    }
+
+    private final Route defaultRoute;
+    private final List<Route> routes;
+    private final Map<String, Route> byServer;
+    private final Map<String, Route> byChannel;
+    private final Map<String, Predicate<String>> audiences;
+
+    public RoutingTable(String defaultChannelId, List<String> defaultWebhookUrls, List<RouteSettings> settings,
+                        Map<String, List<String>> groups, Logger logger) {
+        this.defaultRoute = new Route(DEFAULT, Set.of(), blankToNull(defaultChannelId), List.copyOf(defaultWebhookUrls));
+        List<Route> all = new ArrayList<>();
+        all.add(defaultRoute);
+        Map<String, Route> servers = new HashMap<>();
+        Map<String, Route> channels = new HashMap<>();
+        if (defaultRoute.channelId() != null) channels.put(defaultRoute.channelId(), defaultRoute);
+
+        if (settings != null) {
+            for (RouteSettings s : settings) {
+                if (s == null || s.name == null || !s.name.matches("[A-Za-z0-9_-]+") || DEFAULT.equals(s.name)) {
+                    logger.warning("Ignoring route with missing or invalid name: " + (s == null ? null : s.name));
+                    continue;
+                }
+                Set<String> members = new LinkedHashSet<>();
+                if (s.servers != null) {
+                    for (String name : s.servers) {
+                        List<String> group = (groups != null) ? groups.get(name) : null;
+                        if (group != null) members.addAll(group);
+                        else if (name != null) members.add(name);
+                    }
+                }
+                Route r = new Route(s.name, Collections.unmodifiableSet(members), blankToNull(s.channelId),
+                        urls(s.webhookUrl, s.webhookUrls));
+                all.add(r);
+                for (String server : members) {
+                    Route prev = servers.putIfAbsent(server, r);
+                    if (prev != null) logger.warning("Server '" + server + "' is in routes '" + prev.name() + "' and '" + r.name() + "'; using '" + prev.name() + "'");
+                }
+                if (r.channelId() != null) {
+                    Route prev = channels.putIfAbsent(r.channelId(), r);
+                    if (prev != null) logger.warning("Channel " + r.channelId() + " is used by routes '" + prev.name() + "' and '" + r.name() + "'; Discord messages go to '" + prev.name() + "'");
+                }
+            }
+        }
+        this.routes = List.copyOf(all);
+        this.byServer = Map.copyOf(servers);
+        this.byChannel = Map.copyOf(channels);
+
+        Map<String, Predicate<String>> aud = new HashMap<>();
+        for (Route r : routes) aud.put(r.name(), server -> forServer(server) == r);
+        this.audiences = Map.copyOf(aud);
+    }
+
+    static List<String> urls(String single, List<String> many) {
+        Set<String> out = new LinkedHashSet<>();
+        if (single != null && !single.isBlank()) out.add(single.trim());
+        if (many != null) {
+            for (String u : many) {
+                if (u != null && !u.isBlank()) out.add(u.trim());
+            }
+        }
+        return List.copyOf(out);
+    }
+
+    private static String blankToNull(String s) {
+        return (s == null || s.isBlank()) ? null : s.trim();
+    }
+
+    // ゲーム → Discord：サーバー名からルート。未登録（null 含む）は既定ルート
+    public Route forServer(String server) {
+        if (server == null) return defaultRoute;
+        return byServer.getOrDefault(server, defaultRoute);
+    }
+
+    // Discord → ゲーム：チャンネル ID からルート。対象外のチャンネルは null
+    public Route forChannel(String channelId) {
+        return byChannel.get(channelId);
+    }
+
+    // そのルートのメッセージを受け取るべきプレイヤーか（引数は所属サーバー名、未接続は null）
+    public Predicate<String> audience(Route route) {
+        return audiences.get(route.name());
+    }
+
+    public Route defaultRoute() {
+        return defaultRoute;
+    }
+
+    public List<Route> routes() {
+        return routes;
+    }
+}
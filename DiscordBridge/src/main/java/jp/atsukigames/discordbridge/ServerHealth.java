@@ -0,0 +1,63 @@
+package jp.atsukigames.discordbridge;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// 1 サーバー分の死活状態。不変の State を CAS で差し替えるだけのロックフリーな状態機械。
+// ping の発行時に世代番号を取り、より新しい世代が反映済みなら遅れて届いた結果は捨てる。
+// 状態遷移を返すのは CAS に成功した 1 スレッドだけなので、通知が二重になることはない。
+public final class ServerHealth {
+    public enum Transition { NONE, UP, DOWN, STALE }
+
+    // online == null は未観測
+    public record State(Boolean online, int downStreak, long generation) {
+        static final State UNKNOWN = new State(null, 0, 0);
+    }
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.UNKNOWN);
+    private final AtomicLong generations = new AtomicLong();
+
+    // 観測（ping 発行・受動シグナル）ごとに呼んで世代番号を得る
+    public long nextGeneration() {
+        return generations.incrementAndGet();
+    }
+
+    public State state() {
+        return state.get();
+    }
+
+    // 起動時ウォームアップ用：停止は通知せず、連続失敗 1 回として記録
+    public Transition seed(long generation, boolean isUp) {
+        while (true) {
+            State cur = state.get();
+            if (generation <= cur.generation()) return Transition.STALE;
+            State next = new State(isUp, isUp ? 0 : 1, generation); // すぐに停止判定しないため1から開始
+            if (state.compareAndSet(cur, next)) {
+                return (isUp && !Boolean.TRUE.equals(cur.online())) ? Transition.UP : Transition.NONE;
+            }
+        }
+    }
+
+    // 連続失敗しきい値で停止判定
+    public Transition apply(long generation, boolean isUp, int startupFails, int runtimeFails) {
+        while (true) {
+            State cur = state.get();
+            if (generation <= cur.generation()) return Transition.STALE;
+            Boolean prev = cur.online();
+            State next;
+            Transition t;
+            if (isUp) {
+                boolean changed = (prev == null || !prev);
+                next = new State(true, 0, generation);
+                t = changed ? Transition.UP : Transition.NONE;
+            } else {
+                int base = (prev != null && prev) ? runtimeFails : startupFails;
+                int streak = cur.downStreak() + 1;
+                boolean changed = streak >= base && (prev == null || prev);
+                next = new State(changed ? Boolean.FALSE : prev, streak, generation);
+                t = changed ? Transition.DOWN : Transition.NONE;
+            }
+            if (state.compareAndSet(cur, next)) return t;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package jp.atsukigames.discordbridge;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
+import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.interactions.commands.build.Commands;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+// Discord のスラッシュコマンド（/online /servers /ping）。
+// プレイヤー一覧と死活状態は一定間隔で作り直す不変のスナップショットから答え、コマンドごとにプレイヤーを走査しない。
+// 実際に ping する /ping だけは応答を保留してから結果で書き換え、同じサーバーへの同時の /ping は 1 回の ping を共有する。
+// ユーザーごとに回数を制限する（burst 回まで続けて使え、refillSec ごとに 1 回分戻る）
+public final class SlashCommands {
+    // config.json の slashCommands
+    public static class Settings {
+        public boolean enabled = true;
+        public long snapshotRefreshMs = 5000;
+        public int burst = 3;
+        public long refillSec = 10;
+        public boolean ephemeral = true; // 実行した本人にだけ見える返信
+        public long pingTimeoutMs = 3000;
+    }
+
+    private static final int MAX_CHOICES = 25; // Discord の候補数の上限
+
+    // 問い合わせ用のスナップショット（不変）
+    public record View(long takenAtMs, int total, List<ServerView> servers, List<String> connecting) {
+        ServerView server(String name) {
+            for (ServerView s : servers) {
+                if (s.name().equalsIgnoreCase(name)) return s;
+            }
+            return null;
+        }
+    }
+
+    public record ServerView(String name, Boolean online, Long pingMs, List<String> players) {}
+
+    private record Allowance(double tokens, long atNanos) {}
+
+    private final Settings settings;
+    private final ProxyServer proxy;
+    private final Function<String, Boolean> online;  // サーバー名 -> 稼働中か（未確認は null）
+    private final Function<String, Long> lastPingMs; // 死活監視の直近の ping
+    private final BooleanSupplier active;            // クラスタではリーダーだけが答える
+    private final Supplier<TextSanitizer> sanitizer; // 再読み込みで差し替わるので都度引く
+    private final ScheduledExecutorService scheduler;
+    private final Logger logger;
+
+    private volatile View view = new View(0, 0, List.of(), List.of());
+    private ScheduledFuture<?> refreshTask;
+    private final ConcurrentMap<String, Allowance> allowances = new ConcurrentHashMap<>(); // Discord ユーザー ID
+    private final ConcurrentMap<String, CompletableFuture<Long>> pinging = new ConcurrentHashMap<>(); // 実行中の ping
+
+    private final ConcurrentMap<String, LongAdder> commands = new ConcurrentHashMap<>();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder pingsShared = new LongAdder();
+
+    public SlashCommands(Settings settings, ProxyServer proxy, Function<String, Boolean> online, Function<String, Long> lastPingMs,
+                         BooleanSupplier active, Supplier<TextSanitizer> sanitizer, ScheduledExecutorService scheduler, Logger logger) {
+        this.settings = settings;
+        this.proxy = proxy;
+        this.online = online;
+        this.lastPingMs = lastPingMs;
+        this.active = active;
+        this.sanitizer = sanitizer;
+        this.scheduler = scheduler;
+        this.logger = logger;
+    }
+
+    // 登録するコマンド（ギルドごとに登録する。グローバル登録は反映まで時間がかかる）
+    public static List<CommandData> definitions() {
+        return List.of(
+                Commands.slash("online", "オンラインのプレイヤー"),
+                Commands.slash("servers", "サーバーの稼働状況"),
+                Commands.slash("ping", "サーバーへ ping する")
+                        .addOption(OptionType.STRING, "server", "サーバー名", true, true));
+    }
+
+    public synchronized void start() {
+        refresh();
+        long every = Math.max(500, settings.snapshotRefreshMs);
+        refreshTask = scheduler.scheduleWithFixedDelay(this::refresh, every, every, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (refreshTask != null) refreshTask.cancel(false);
+    }
+
+    // プレイヤー一覧を 1 回だけ走査し、サーバーごとに振り分ける
+    void refresh() {
+        try {
+            Map<String, List<String>> byServer = new HashMap<>();
+            List<String> connecting = new ArrayList<>();
+            int total = 0;
+            for (Player p : proxy.getAllPlayers()) {
+                total++;
+                String server = p.getCurrentServer().map(cs -> cs.getServerInfo().getName()).orElse(null);
+                if (server == null) connecting.add(p.getUsername());
+                else byServer.computeIfAbsent(server, k -> new ArrayList<>()).add(p.getUsername());
+            }
+            List<ServerView> servers = new ArrayList<>();
+            for (RegisteredServer rs : proxy.getAllServers()) {
+                String name = rs.getServerInfo().getName();
+                List<String> players = byServer.getOrDefault(name, new ArrayList<>());
+                players.sort(String.CASE_INSENSITIVE_ORDER);
+                servers.add(new ServerView(name, online.apply(name), lastPingMs.apply(name), List.copyOf(players)));
+            }
+            servers.sort(Comparator.comparing(ServerView::name));
+            connecting.sort(String.CASE_INSENSITIVE_ORDER);
+            this.view = new View(System.currentTimeMillis(), total, List.copyOf(servers), List.copyOf(connecting));
+        } catch (RuntimeException e) {
+            logger.warning("Failed to refresh the slash command snapshot: " + e.getMessage());
+        }
+        // 満タンまで戻った記録は持たなくても同じ
+        long now = System.nanoTime();
+        allowances.values().removeIf(a -> now - a.atNanos() > refillNanos() * Math.max(1, settings.burst));
+    }
+
+    public void onCommand(SlashCommandInteractionEvent event) {
+        if (!active.getAsBoolean()) return; // 他のプロキシ（リーダー）が答える
+        String name = event.getName();
+        if (!"online".equals(name) && !"servers".equals(name) && !"ping".equals(name)) return;
+        if (!tryAcquire(event.getUser().getId())) {
+            rateLimited.increment();
+            event.reply("少し待ってからもう一度お試しください。").setEphemeral(true).queue();
+            return;
+        }
+        commands.computeIfAbsent(name, k -> new LongAdder()).increment();
+        View v = view;
+        switch (name) {
+            case "online" -> reply(event, online(v, sanitizer.get()));
+            case "servers" -> reply(event, servers(v));
+            default -> {
+                OptionMapping opt = event.getOption("server");
+                ServerView s = (opt != null) ? v.server(opt.getAsString()) : null;
+                if (s == null) reply(event, "そのサーバーはありません。");
+                else ping(event, s.name());
+            }
+        }
+    }
+
+    // /ping のサーバー名の候補。これもスナップショットから（回数制限の対象外）
+    public void onAutoComplete(CommandAutoCompleteInteractionEvent event) {
+        if (!active.getAsBoolean() || !"ping".equals(event.getName())) return;
+        String prefix = event.getFocusedOption().getValue().toLowerCase(Locale.ROOT);
+        List<String> names = view.servers().stream().map(ServerView::name)
+                .filter(n -> n.toLowerCase(Locale.ROOT).startsWith(prefix)).limit(MAX_CHOICES).toList();
+        event.replyChoiceStrings(names).queue();
+    }
+
+    private void reply(SlashCommandInteractionEvent event, String text) {
+        event.reply(text).setEphemeral(settings.ephemeral).queue();
+    }
+
+    // 応答は 3 秒以内に返す必要があるので先に保留し、ping の結果で書き換える
+    private void ping(SlashCommandInteractionEvent event, String server) {
+        RegisteredServer rs = proxy.getServer(server).orElse(null);
+        if (rs == null) {
+            reply(event, "そのサーバーはありません。");
+            return;
+        }
+        event.deferReply(settings.ephemeral).queue();
+        CompletableFuture<Long> mine = new CompletableFuture<>();
+        CompletableFuture<Long> shared = pinging.putIfAbsent(server, mine);
+        if (shared != null) {
+            pingsShared.increment();
+        } else {
+            shared = mine;
+            final long sentNanos = System.nanoTime();
+            rs.ping().orTimeout(settings.pingTimeoutMs, TimeUnit.MILLISECONDS).whenComplete((pong, err) -> {
+                pinging.remove(server, mine);
+                mine.complete((err == null && pong != null) ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentNanos) : null);
+            });
+        }
+        shared.thenAccept(ms -> event.getHook()
+                .editOriginal("**" + server + "** " + (ms != null ? "応答あり " + ms + "ms" : "応答なし")).queue());
+    }
+
+    // プレイヤー名はチャットと同じく無害化する（"_" が斜体にならないように）
+    static String online(View v, TextSanitizer s) {
+        StringBuilder sb = new StringBuilder("**オンライン " + v.total() + "人**");
+        for (ServerView sv : v.servers()) {
+            if (sv.players().isEmpty()) continue;
+            if (!append(sb, "\n**" + sv.name() + "** (" + sv.players().size() + "): " + names(sv.players(), s))) return sb.toString();
+        }
+        if (!v.connecting().isEmpty()) append(sb, "\n接続中 (" + v.connecting().size() + "): " + names(v.connecting(), s));
+        return sb.toString();
+    }
+
+    private static String names(List<String> players, TextSanitizer s) {
+        StringBuilder sb = new StringBuilder();
+        for (String p : players) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(s.toDiscord(p));
+        }
+        return sb.toString();
+    }
+
+    private static String servers(View v) {
+        if (v.servers().isEmpty()) return "サーバーが登録されていません。";
+        StringBuilder sb = new StringBuilder();
+        for (ServerView s : v.servers()) {
+            String line = StatusDashboard.serverLine(s.name(), s.online(), s.players().size(), s.pingMs());
+            if (!append(sb, (sb.length() == 0 ? "" : "\n") + line)) break;
+        }
+        return sb.toString();
+    }
+
+    // 2000 文字に収まらなければ打ち切って false
+    private static boolean append(StringBuilder sb, String part) {
+        if (sb.length() + part.length() <= ChatBatcher.MAX_CONTENT - 2) {
+            sb.append(part);
+            return true;
+        }
+        int room = ChatBatcher.MAX_CONTENT - 2 - sb.length();
+        if (room > 0) sb.append(part, 0, room);
+        sb.append("\n…");
+        return false;
+    }
+
+    private long refillNanos() {
+        return TimeUnit.SECONDS.toNanos(Math.max(1, settings.refillSec));
+    }
+
+    // ユーザーごとのトークンバケット
+    boolean tryAcquire(String userId) {
+        long now = System.nanoTime();
+        int burst = Math.max(1, settings.burst);
+        double refill = refillNanos();
+        boolean[] ok = new boolean[1];
+        allowances.compute(userId, (k, a) -> {
+            double tokens = (a == null) ? burst : Math.min(burst, a.tokens() + (now - a.atNanos()) / refill);
+            if (tokens >= 1) {
+                ok[0] = true;
+                tokens -= 1;
+            }
+            return new Allowance(tokens, now);
+        });
+        return ok[0];
+    }
+
+    public View view() { return view; }
+
+    public Map<String, Long> commandCounts() {
+        Map<String, Long> out = new HashMap<>();
+        commands.forEach((k, v) -> out.put(k, v.sum()));
+        return out;
+    }
+
+    public long rateLimited() { return rateLimited.sum(); }
+    public long pingsShared() { return pingsShared.sum(); }
+}
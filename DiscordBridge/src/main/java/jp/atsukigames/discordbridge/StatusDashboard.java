@@ -0,0 +1,290 @@
+package jp.atsukigames.discordbridge;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+// 全バックエンドの状態（稼働・人数・ping）を 1 通の embed にまとめ、変化のたびに同じメッセージを書き換える。
+// 編集は minEditIntervalSec に 1 回まで：その間の変化はすべて次の 1 回にまとめ、送信中も 1 件だけ。
+// 内容が前回と同じなら編集しない。メッセージ ID は dataDirectory に残し、再起動後も同じメッセージを使う
+public final class StatusDashboard {
+    // config.json の dashboard
+    public static class Settings {
+        public boolean enabled = false;
+        public long minEditIntervalSec = 10;
+        public long refreshSec = 60;            // 人数・ping を取り直す間隔（0 なら状態の変化時だけ）
+        public Alerts alerts = Alerts.OUTAGES;  // 従来の状態通知（1 遷移 1 通）をどこまで残すか
+        public boolean pin = true;              // ボットがあればピン留めする（Webhook はピン留めできない）
+        public String title = "サーバー状況";
+    }
+
+    public enum Alerts { NONE, OUTAGES, ALL }
+
+    // messageId が null なら新規投稿。投稿・編集したメッセージの ID を返す
+    @FunctionalInterface
+    public interface Publisher {
+        CompletableFuture<String> publish(String messageId, WebhookPayload payload);
+    }
+
+    private final Settings settings;
+    private final ProxyServer proxy;
+    private final Function<String, Boolean> online;   // サーバー名 -> 稼働中か（未確認は null）
+    private final BooleanSupplier active;             // クラスタではリーダーだけが書き換える
+    private final Publisher publisher;
+    private final Consumer<String> pinner;            // 新しく投稿したメッセージの ID。無ければ null
+    private final Path stateFile;
+    private final ScheduledExecutorService scheduler;
+    private final Logger logger;
+    private final ConcurrentMap<String, Long> lastPingMs = new ConcurrentHashMap<>();
+
+    // 以下 this で保護
+    private MessageTemplates templates;
+    private String messageId;
+    private String lastBody;
+    private boolean started; // start() 前の変化は溜めるだけ（保存済みの ID を読む前に投稿しない）
+    private boolean dirty;
+    private boolean scheduled;
+    private boolean inFlight;
+    private boolean closed;
+    private boolean finalPending; // 停止時に送信中だった：その応答の後で最後の編集を送る
+    private long lastEditNanos = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+    private long changedAtSec = System.currentTimeMillis() / 1000;
+    private ScheduledFuture<?> refreshTask;
+
+    private final AtomicLong edits = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong recreated = new AtomicLong();
+
+    public StatusDashboard(Settings settings, MessageTemplates templates, ProxyServer proxy, Function<String, Boolean> online,
+                           BooleanSupplier active, Publisher publisher, Consumer<String> pinner, Path stateFile,
+                           ScheduledExecutorService scheduler, Logger logger) {
+        this.settings = settings;
+        this.templates = templates;
+        this.proxy = proxy;
+        this.online = online;
+        this.active = active;
+        this.publisher = publisher;
+        this.pinner = pinner;
+        this.stateFile = stateFile;
+        this.scheduler = scheduler;
+        this.logger = logger;
+    }
+
+    public void start() {
+        try {
+            if (Files.exists(stateFile)) {
+                String id = Files.readString(stateFile, StandardCharsets.UTF_8).trim();
+                synchronized (this) {
+                    if (!id.isEmpty()) messageId = id;
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to read dashboard message id; posting a new one: " + e.getMessage());
+        }
+        long every = settings.refreshSec;
+        synchronized (this) {
+            started = true;
+            if (every > 0) refreshTask = scheduler.scheduleWithFixedDelay(this::markDirty, every, every, TimeUnit.SECONDS);
+        }
+        markDirty();
+    }
+
+    // 再読み込みで文言・色が変わったとき
+    public void setTemplates(MessageTemplates t) {
+        synchronized (this) {
+            templates = t;
+            lastBody = null; // 色だけの変更でも書き換える
+        }
+        markDirty();
+    }
+
+    // 遷移が既存の状態通知としても流れるべきか
+    public boolean alert(boolean isUp) {
+        Alerts a = settings.alerts;
+        return a == Alerts.ALL || (a == Alerts.OUTAGES && !isUp);
+    }
+
+    // HealthMonitor.Recorder として観測を受け取る。ping の値だけの変化は定期更新に任せる
+    public void onSample(String server, HealthMonitor.Sample sample, long latencyNanos, Boolean isOnline, boolean transition) {
+        if (latencyNanos >= 0) lastPingMs.put(server, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        if (transition) markDirty();
+    }
+
+    // 何か変わったかもしれない。前回の編集から minEditIntervalSec 経っていなければその時まで待ってまとめる
+    public void markDirty() {
+        synchronized (this) {
+            if (closed) return;
+            if (dirty) coalesced.incrementAndGet();
+            dirty = true;
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        long delay;
+        synchronized (this) {
+            if (!started || closed || !dirty || scheduled || inFlight) return;
+            scheduled = true;
+            long next = lastEditNanos + TimeUnit.SECONDS.toNanos(Math.max(0, settings.minEditIntervalSec));
+            delay = Math.max(0, next - System.nanoTime());
+        }
+        scheduler.schedule(() -> flush(false), delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void flush(boolean last) {
+        String id;
+        WebhookPayload payload;
+        synchronized (this) {
+            scheduled = false;
+            if ((closed && !last) || !dirty || inFlight) return;
+            dirty = false;
+            if (!active.getAsBoolean()) return; // リーダーが書き換える。リーダーになったら次の定期更新で追いつく
+            String body = render(last);
+            if (body.equals(lastBody)) {
+                skipped.incrementAndGet();
+                return;
+            }
+            lastBody = body;
+            changedAtSec = System.currentTimeMillis() / 1000;
+            payload = payload(body, last);
+            id = messageId;
+            inFlight = true;
+            lastEditNanos = System.nanoTime();
+        }
+        CompletableFuture<String> f;
+        try {
+            f = publisher.publish(id, payload);
+        } catch (RuntimeException e) {
+            f = CompletableFuture.failedFuture(e);
+        }
+        f.whenComplete((newId, ex) -> onPublished(id, newId, ex));
+    }
+
+    private void onPublished(String usedId, String newId, Throwable ex) {
+        boolean last;
+        boolean created = false;
+        synchronized (this) {
+            inFlight = false;
+            if (ex == null) {
+                edits.incrementAndGet();
+                created = usedId == null && newId != null;
+                if (created) messageId = newId;
+            } else {
+                failures.incrementAndGet();
+                lastBody = null; // 次の機会に必ず送り直す
+                dirty = true;
+                if (usedId != null && isGone(ex)) {
+                    // 手で消された・Webhook が替わった：新しく投稿し直す
+                    recreated.incrementAndGet();
+                    messageId = null;
+                    lastEditNanos = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+                } else {
+                    logger.warning("Failed to update the status dashboard: " + ex.getMessage());
+                }
+            }
+            last = finalPending;
+            finalPending = false;
+        }
+        if (created) {
+            saveMessageId(newId);
+            if (settings.pin && pinner != null) pinner.accept(newId);
+        }
+        if (last) flush(true);
+        else scheduleFlush(); // 送信中に溜まった変化
+    }
+
+    private static boolean isGone(Throwable ex) {
+        Throwable t = ex;
+        while (t instanceof CompletionException && t.getCause() != null) t = t.getCause();
+        return t instanceof WebhookSenderPool.HttpFailure hf && hf.status() == 404;
+    }
+
+    private void saveMessageId(String id) {
+        try {
+            Files.createDirectories(stateFile.getParent());
+            Files.writeString(stateFile, id, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            logger.warning("Failed to save dashboard message id: " + e.getMessage());
+        }
+    }
+
+    // 最終更新の時刻を除いた本文（同じなら編集しない）
+    private String render(boolean last) {
+        if (last) return ":black_circle: **プロキシ停止中**";
+        List<RegisteredServer> servers = new ArrayList<>(proxy.getAllServers());
+        servers.sort(Comparator.comparing(rs -> rs.getServerInfo().getName()));
+        StringBuilder sb = new StringBuilder();
+        int total = 0;
+        for (RegisteredServer rs : servers) {
+            String name = rs.getServerInfo().getName();
+            Boolean up = online.apply(name);
+            int players = rs.getPlayersConnected().size();
+            total += players;
+            String line = "\n" + serverLine(name, up, players, lastPingMs.get(name));
+            if (sb.length() + line.length() > JoinQuitAggregator.MAX_DESCRIPTION - 128) {
+                sb.append("\n…");
+                break;
+            }
+            sb.append(line);
+        }
+        sb.append("\n\n合計 ").append(total).append("人");
+        return sb.toString();
+    }
+
+    // 1 サーバー分の行（スラッシュコマンドの /servers と共通）
+    static String serverLine(String name, Boolean up, int players, Long pingMs) {
+        if (up == null) return ":white_circle: **" + name + "** 確認中";
+        if (!up) return ":red_circle: **" + name + "** 停止中";
+        return ":green_circle: **" + name + "** " + players + "人" + (pingMs != null ? " ・ " + pingMs + "ms" : "");
+    }
+
+    private WebhookPayload payload(String body, boolean last) {
+        boolean allUp = !last && !body.contains(":red_circle:");
+        String description = "**" + settings.title + "**\n" + body + "\n最終変化 <t:" + changedAtSec + ":R>";
+        return WebhookPayload.embed(templates.joinQuitUsername, allUp ? templates.colorUp : templates.colorDown, description);
+    }
+
+    // 停止時：定期更新を止め、「停止中」への最後の編集を送信キューへ積む（送り切るのは呼び出し側の drain）
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            if (refreshTask != null) refreshTask.cancel(false);
+            if (!started || !active.getAsBoolean()) return;
+            dirty = true;
+            if (inFlight) {
+                finalPending = true; // 投稿中なら ID が分かってから編集する
+                return;
+            }
+        }
+        flush(true);
+    }
+
+    public synchronized String messageId() { return messageId; }
+    public long edits() { return edits.get(); }
+    public long skipped() { return skipped.get(); }
+    public long coalesced() { return coalesced.get(); }
+    public long failures() { return failures.get(); }
+    public long recreated() { return recreated.get(); }
+}
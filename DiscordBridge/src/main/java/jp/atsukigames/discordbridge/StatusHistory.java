@@ -0,0 +1,415 @@
+package jp.atsukigames.discordbridge;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// バックエンドごとの死活の履歴（dataDirectory/history/<サーバー>.ring）。
+// 固定長のレコードをメモリマップしたリングファイルへ書き、容量を超えたら古いものから上書きする。
+// 集計用に分単位（直近 1 時間）と時単位（直近 7 日）の小計を書き込みのたびに更新しておき、
+// 問い合わせは小計を足し合わせるだけで履歴は読まない。ファイルを頭から読むのは起動時に小計を作り直すときだけ。
+//
+// ヘッダ（128 バイト）: [int MAGIC][int 版][int レコード長][int 容量][long 書き込み総数][short 名前長][サーバー名 UTF-8]
+// レコード（16 バイト）: [long 時刻 ms][int ping μs（応答なしは -1）][byte 種別][byte 反映後の状態][byte 遷移][byte 予約]
+public final class StatusHistory implements AutoCloseable {
+    // config.json の statusHistory
+    public static class Settings {
+        public boolean enabled = true;
+        public int capacity = 100_000;      // バックエンドごとのレコード数（1 件 16 バイト）
+        public long summaryIntervalMin = 0; // 稼働状況のまとめを Discord へ送る間隔（0 で送らない）
+    }
+
+    public enum Window {
+        HOUR("1h", 60, TimeUnit.MINUTES.toMillis(1)),
+        DAY("24h", 24, TimeUnit.HOURS.toMillis(1)),
+        WEEK("7d", 168, TimeUnit.HOURS.toMillis(1));
+
+        public final String label;
+        final int buckets;
+        final long bucketMs;
+
+        Window(String label, int buckets, long bucketMs) {
+            this.label = label;
+            this.buckets = buckets;
+            this.bucketMs = bucketMs;
+        }
+    }
+
+    // uptime は状態が分かっていた時間のうち稼働中だった割合（coveredMs == 0 なら未観測）
+    public record Summary(double uptime, long coveredMs, long p50Micros, long p99Micros, int flaps, int probes, int failures) {}
+
+    private static final int MAGIC = 0x44425348; // "DBSH"
+    private static final int VERSION = 1;
+    private static final int HEADER = 128;
+    private static final int RECORD = 16;
+    private static final int MAX_NAME = HEADER - 26;
+    private static final int MAX_CAPACITY = 10_000_000;
+    private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+    // 記録の間がこれ以上空いたら（プロキシ停止中など）、その間の状態は分からないものとして数えない
+    private static final long MAX_GAP_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final byte UNKNOWN = 2;
+
+    // ping 時間の粗いヒストグラム（LatencyHistogram と同じ対数線形で、2 の冪ごとに 4 分割。相対誤差 25% 以内）
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int HALF = SUB_COUNT >> 1;
+    private static final int LATENCY_BUCKETS = SUB_COUNT + (32 - SUB_BITS) * HALF;
+
+    private static final class Bucket {
+        long key = Long.MIN_VALUE; // 分または時の通し番号
+        long upMs;
+        long knownMs;
+        int probes;
+        int failures;
+        int flaps;
+        final int[] latency = new int[LATENCY_BUCKETS];
+
+        void reset(long key) {
+            this.key = key;
+            upMs = knownMs = 0;
+            probes = failures = flaps = 0;
+            Arrays.fill(latency, 0);
+        }
+    }
+
+    // 1 バックエンド分。this で保護
+    private static final class Series {
+        final String server;
+        final FileChannel channel;
+        final MappedByteBuffer buf;
+        final int capacity;
+        long count;
+        final Bucket[] minutes = new Bucket[Window.HOUR.buckets];
+        final Bucket[] hours = new Bucket[Window.WEEK.buckets];
+        long lastMs = -1;
+        byte lastOnline = UNKNOWN;
+
+        Series(String server, FileChannel channel, MappedByteBuffer buf, int capacity, long count) {
+            this.server = server;
+            this.channel = channel;
+            this.buf = buf;
+            this.capacity = capacity;
+            this.count = count;
+        }
+    }
+
+    private final Path dir;
+    private final int capacity;
+    private final Logger logger;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> failed = new ConcurrentHashMap<>(); // 開けなかったサーバー（警告は 1 回だけ）
+    private volatile boolean closed;
+
+    public StatusHistory(Path dir, Settings settings, Logger logger) {
+        this.dir = dir;
+        this.capacity = Math.max(16, Math.min(MAX_CAPACITY, settings.capacity));
+        this.logger = logger;
+    }
+
+    // 既存のファイルをすべて開いて小計を作り直す
+    public void open() throws IOException {
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.ring")) {
+            for (Path p : ds) {
+                try {
+                    Series s = openSeries(p, null);
+                    series.put(s.server, s);
+                } catch (IOException e) {
+                    logger.warning("Skipping unreadable status history " + p.getFileName() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // HealthMonitor.Recorder
+    public void record(String server, HealthMonitor.Sample sample, long latencyNanos, Boolean online, boolean transition) {
+        if (closed) return;
+        Series s = seriesFor(server);
+        if (s == null) return;
+        long now = System.currentTimeMillis();
+        int micros = (latencyNanos < 0) ? -1 : (int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        byte state = (online == null) ? UNKNOWN : (byte) (online ? 1 : 0);
+        synchronized (s) {
+            if (closed) return;
+            int pos = HEADER + (int) (s.count % s.capacity) * RECORD;
+            s.buf.putLong(pos, now);
+            s.buf.putInt(pos + 8, micros);
+            s.buf.put(pos + 12, (byte) sample.ordinal());
+            s.buf.put(pos + 13, state);
+            s.buf.put(pos + 14, (byte) (transition ? 1 : 0));
+            s.buf.put(pos + 15, (byte) 0);
+            s.count++;
+            s.buf.putLong(16, s.count); // レコードを書いてから総数を進める
+            apply(s, now, sample, micros, state, transition);
+        }
+    }
+
+    private Series seriesFor(String server) {
+        Series s = series.get(server);
+        if (s != null || failed.containsKey(server)) return s;
+        synchronized (series) {
+            s = series.get(server);
+            if (s != null) return s;
+            try {
+                s = openSeries(dir.resolve(fileName(server)), server);
+                series.put(server, s);
+                return s;
+            } catch (IOException e) {
+                failed.put(server, Boolean.TRUE);
+                logger.warning("Failed to open status history for " + server + "; not recording it: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    // server == null は既存ファイルを開くとき（名前はヘッダから読む）
+    private Series openSeries(Path path, String server) throws IOException {
+        List<long[]> carried = null;
+        String name = server;
+        if (Files.exists(path)) {
+            // 消す可能性があるのでマップせずに読む（マップしたままのファイルは Windows では消せない）
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer head = readFully(ch, 0, HEADER);
+                int oldCap = head.getInt(12);
+                int nameLen = head.getShort(24);
+                boolean valid = head.getInt(0) == MAGIC && head.getInt(4) == VERSION && head.getInt(8) == RECORD
+                        && oldCap > 0 && oldCap <= MAX_CAPACITY && nameLen >= 0 && nameLen <= MAX_NAME
+                        && ch.size() == HEADER + (long) oldCap * RECORD;
+                if (!valid) {
+                    if (server == null) throw new IOException("not a status history file");
+                    logger.warning("Discarding unreadable status history for " + server);
+                } else {
+                    byte[] nb = new byte[nameLen];
+                    head.get(26, nb);
+                    if (name == null) name = new String(nb, StandardCharsets.UTF_8);
+                    if (oldCap == capacity) return load(path, name);
+                    // 容量が変わった：新しい方に収まる分だけ移す
+                    ByteBuffer old = readFully(ch, 0, HEADER + oldCap * RECORD);
+                    carried = readAll(old, oldCap, head.getLong(16));
+                }
+            }
+            Files.delete(path);
+        }
+        Series s = create(path, name);
+        if (carried != null) {
+            for (long[] r : carried.subList(Math.max(0, carried.size() - capacity), carried.size())) {
+                int pos = HEADER + (int) (s.count % s.capacity) * RECORD;
+                s.buf.putLong(pos, r[0]);
+                s.buf.putInt(pos + 8, (int) r[1]);
+                s.buf.put(pos + 12, (byte) r[2]);
+                s.buf.put(pos + 13, (byte) r[3]);
+                s.buf.put(pos + 14, (byte) r[4]);
+                s.count++;
+                replay(s, r);
+            }
+            s.buf.putLong(16, s.count);
+        }
+        return s;
+    }
+
+    private static ByteBuffer readFully(FileChannel ch, long position, int length) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(length);
+        while (b.hasRemaining()) {
+            if (ch.read(b, position + b.position()) < 0) throw new IOException("truncated status history");
+        }
+        return b;
+    }
+
+    private Series create(Path path, String name) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity * RECORD);
+        byte[] nb = truncate(name.getBytes(StandardCharsets.UTF_8));
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, VERSION);
+        buf.putInt(8, RECORD);
+        buf.putInt(12, capacity);
+        buf.putLong(16, 0);
+        buf.putShort(24, (short) nb.length);
+        buf.put(26, nb);
+        return new Series(name, ch, buf, capacity, 0);
+    }
+
+    private Series load(Path path, String name) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity * RECORD);
+        Series s = new Series(name, ch, buf, capacity, buf.getLong(16));
+        for (long[] r : readAll(buf, capacity, s.count)) replay(s, r);
+        return s;
+    }
+
+    // 古い順に [時刻, μs, 種別, 状態, 遷移]
+    private static List<long[]> readAll(ByteBuffer buf, int cap, long count) {
+        long n = Math.min(count, cap);
+        List<long[]> out = new ArrayList<>((int) n);
+        for (long i = count - n; i < count; i++) {
+            int pos = HEADER + (int) (i % cap) * RECORD;
+            out.add(new long[] { buf.getLong(pos), buf.getInt(pos + 8), buf.get(pos + 12), buf.get(pos + 13), buf.get(pos + 14) });
+        }
+        return out;
+    }
+
+    // 7 日より古いものは小計の枠に入らないので飛ばす
+    private static void replay(Series s, long[] r) {
+        if (r[0] < System.currentTimeMillis() - TimeUnit.DAYS.toMillis(7) - MAX_GAP_MS) return;
+        int kind = (int) r[2];
+        if (kind < 0 || kind >= HealthMonitor.Sample.values().length) return;
+        apply(s, r[0], HealthMonitor.Sample.values()[kind], (int) r[1], (byte) r[3], r[4] != 0);
+    }
+
+    // 前回の記録から今回までの時間を前回の状態として分・時の小計へ割り振り、今回の ping を数える
+    private static void apply(Series s, long now, HealthMonitor.Sample sample, int micros, byte state, boolean transition) {
+        if (s.lastMs >= 0 && s.lastOnline != UNKNOWN && now > s.lastMs) {
+            long from = s.lastMs;
+            long to = Math.min(now, s.lastMs + MAX_GAP_MS);
+            while (from < to) {
+                long end = Math.min(to, (from / MINUTE_MS + 1) * MINUTE_MS);
+                long d = end - from;
+                for (Bucket b : new Bucket[] { bucket(s.minutes, from / MINUTE_MS), bucket(s.hours, from / HOUR_MS) }) {
+                    if (b == null) continue;
+                    b.knownMs += d;
+                    if (s.lastOnline == 1) b.upMs += d;
+                }
+                from = end;
+            }
+        }
+        for (Bucket b : new Bucket[] { bucket(s.minutes, now / MINUTE_MS), bucket(s.hours, now / HOUR_MS) }) {
+            if (b == null) continue;
+            if (sample == HealthMonitor.Sample.PING_OK || sample == HealthMonitor.Sample.PING_FAILED) {
+                b.probes++;
+                if (micros < 0) b.failures++;
+                else b.latency[latencyIndex(micros)]++;
+            }
+            if (transition) b.flaps++;
+        }
+        if (now >= s.lastMs) {
+            s.lastMs = now;
+            if (state != UNKNOWN) s.lastOnline = state;
+        }
+    }
+
+    // key の小計。その枠がもっと新しい時刻に使われていれば null（古すぎる記録は捨てる）
+    private static Bucket bucket(Bucket[] ring, long key) {
+        int i = (int) Math.floorMod(key, (long) ring.length);
+        Bucket b = ring[i];
+        if (b == null) {
+            b = new Bucket();
+            ring[i] = b;
+        }
+        if (b.key == key) return b;
+        if (b.key > key) return null;
+        b.reset(key);
+        return b;
+    }
+
+    public Summary summary(String server, Window w) {
+        Series s = series.get(server);
+        if (s == null) return new Summary(0, 0, 0, 0, 0, 0, 0);
+        long nowKey = System.currentTimeMillis() / w.bucketMs;
+        long up = 0, known = 0;
+        int probes = 0, failures = 0, flaps = 0;
+        long[] lat = new long[LATENCY_BUCKETS];
+        synchronized (s) {
+            for (Bucket b : (w == Window.HOUR) ? s.minutes : s.hours) {
+                if (b == null || b.key > nowKey || b.key <= nowKey - w.buckets) continue;
+                up += b.upMs;
+                known += b.knownMs;
+                probes += b.probes;
+                failures += b.failures;
+                flaps += b.flaps;
+                for (int i = 0; i < LATENCY_BUCKETS; i++) lat[i] += b.latency[i];
+            }
+        }
+        return new Summary(known == 0 ? 0 : (double) up / known, known,
+                percentile(lat, 0.50), percentile(lat, 0.99), flaps, probes, failures);
+    }
+
+    // 記録のあるサーバー（名前順）
+    public List<String> servers() {
+        return new ArrayList<>(new TreeMap<>(series).keySet());
+    }
+
+    // /discordbridge status と Discord のまとめで使う 1 行
+    public static String describe(Window w, Summary s) {
+        if (s.coveredMs() == 0 && s.probes() == 0) return w.label + ": 記録なし";
+        StringBuilder sb = new StringBuilder();
+        sb.append(w.label).append(": 稼働率 ").append(String.format(Locale.ROOT, "%.2f%%", s.uptime() * 100));
+        if (s.probes() > s.failures()) {
+            sb.append(" / ping p50 ").append(ms(s.p50Micros())).append(" p99 ").append(ms(s.p99Micros()));
+        }
+        sb.append(" / 状態変化 ").append(s.flaps()).append("回");
+        return sb.toString();
+    }
+
+    private static String ms(long micros) {
+        return (micros < 10_000) ? String.format(Locale.ROOT, "%.1fms", micros / 1000.0) : (micros / 1000) + "ms";
+    }
+
+    private static long percentile(long[] counts, double q) {
+        long n = 0;
+        for (long c : counts) n += c;
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return latencyValue(i);
+        }
+        return latencyValue(counts.length - 1);
+    }
+
+    static int latencyIndex(int v) {
+        if (v < SUB_COUNT) return v;
+        int shift = 31 - Integer.numberOfLeadingZeros(v) - (SUB_BITS - 1);
+        return SUB_COUNT + (shift - 1) * HALF + (v >>> shift) - HALF;
+    }
+
+    static long latencyValue(int index) {
+        if (index < SUB_COUNT) return index;
+        int shift = (index - SUB_COUNT) / HALF + 1;
+        long sub = (index - SUB_COUNT) % HALF + HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    // サーバー名をファイル名に使える形へ（衝突しないよう元の名前のハッシュを付ける）
+    static String fileName(String server) {
+        String safe = server.replaceAll("[^A-Za-z0-9_.-]", "_");
+        if (safe.length() > 48) safe = safe.substring(0, 48);
+        return safe + "-" + Integer.toHexString(server.hashCode()) + ".ring";
+    }
+
+    private static byte[] truncate(byte[] b) {
+        return (b.length <= MAX_NAME) ? b : Arrays.copyOf(b, MAX_NAME);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Series s : series.values()) {
+            synchronized (s) {
+                try {
+                    s.buf.force();
+                    s.channel.close();
+                } catch (IOException e) {
+                    logger.fine("Failed to close status history for " + s.server + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package jp.atsukigames.discordbridge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// チャット本文の無害化。正規表現を重ねず、1 文字ずつの走査で済ませる（全チャットで呼ばれるため）。
+//   ゲーム → Discord : § 装飾コード除去・禁止語伏せ字・Markdown エスケープ・メンション無効化
+//   Discord → ゲーム : § 装飾コード除去・禁止語伏せ字
+// 禁止語は設定読み込み時に Aho-Corasick オートマトンへ変換しておき、語数に関係なく 1 パスで照合する。
+public final class TextSanitizer {
+    // config.json の sanitize
+    public static class Settings {
+        public boolean escapeMarkdown = true;
+        public boolean neutralizeMentions = true;
+        public boolean stripFormatting = true;
+        public List<String> filterWords = new ArrayList<>();
+        public String filterMask = "*";
+    }
+
+    private static final char SECTION = '§';
+    private static final char ZWSP = '\u200B'; // @ の直後に挟んでメンションにならないようにする
+
+    private final boolean escapeMarkdown;
+    private final boolean neutralizeMentions;
+    private final boolean stripFormatting;
+    private final char mask;
+    private final Matcher matcher; // 禁止語が無ければ null
+
+    private final AtomicLong masked = new AtomicLong();
+
+    public TextSanitizer(Settings s) {
+        if (s == null) s = new Settings();
+        this.escapeMarkdown = s.escapeMarkdown;
+        this.neutralizeMentions = s.neutralizeMentions;
+        this.stripFormatting = s.stripFormatting;
+        this.mask = (s.filterMask == null || s.filterMask.isEmpty()) ? '*' : s.filterMask.charAt(0);
+        this.matcher = Matcher.build(s.filterWords);
+    }
+
+    public String toDiscord(String text) {
+        if (text == null || text.isEmpty()) return text;
+        char[] buf = new char[text.length()];
+        int len = scan(text, buf);
+        if (!escapeMarkdown && !neutralizeMentions) return new String(buf, 0, len);
+
+        StringBuilder sb = new StringBuilder(len + 16);
+        boolean lineStart = true;
+        for (int i = 0; i < len; i++) {
+            char c = buf[i];
+            if (escapeMarkdown) {
+                switch (c) {
+                    case '\\': case '*': case '_': case '~': case '`': case '|': case '[': case ']':
+                        sb.append('\\');
+                        break;
+                    case '>': case '#': case '-':
+                        if (lineStart) sb.append('\\'); // 引用・見出し・小見出しは行頭のみ
+                        break;
+                    default:
+                        break;
+                }
+            }
+            sb.append(c);
+            if (neutralizeMentions && c == '@') sb.append(ZWSP);
+            if (c == '\n') lineStart = true;
+            else if (c != ' ') lineStart = false;
+        }
+        return sb.toString();
+    }
+
+    public String toGame(String text) {
+        if (text == null || text.isEmpty()) return text;
+        char[] buf = new char[text.length()];
+        return new String(buf, 0, scan(text, buf));
+    }
+
+    // § コードを落としながら禁止語を照合し、一致した区間を伏せ字にして buf へ書く。書いた長さを返す
+    private int scan(String text, char[] buf) {
+        int n = 0;
+        int state = 0;
+        long hits = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (stripFormatting && c == SECTION) {
+                i++; // 次の 1 文字（色コード）ごと捨てる
+                continue;
+            }
+            buf[n++] = c;
+            if (matcher != null) {
+                state = matcher.step(state, Character.toLowerCase(c));
+                int hit = matcher.longestMatch(state);
+                if (hit > 0) {
+                    Arrays.fill(buf, n - hit, n, mask);
+                    hits++;
+                }
+            }
+        }
+        if (hits > 0) masked.addAndGet(hits);
+        return n;
+    }
+
+    public long maskedCount() {
+        return masked.get();
+    }
+
+    public int filterSize() {
+        return matcher == null ? 0 : matcher.patterns;
+    }
+
+    // Aho-Corasick。遷移は各ノードの昇順 char 配列を二分探索する
+    static final class Matcher {
+        private final char[][] keys;
+        private final int[][] next;
+        private final int[] fail;
+        private final int[] out; // このノードで終わる最長の語の長さ（fail 先を含む）。無ければ 0
+        final int patterns;
+
+        private Matcher(char[][] keys, int[][] next, int[] fail, int[] out, int patterns) {
+            this.keys = keys;
+            this.next = next;
+            this.fail = fail;
+            this.out = out;
+            this.patterns = patterns;
+        }
+
+        static Matcher build(List<String> words) {
+            if (words == null) return null;
+            List<Map<Character, Integer>> trie = new ArrayList<>();
+            List<Integer> depthEnd = new ArrayList<>();
+            trie.add(new HashMap<>());
+            depthEnd.add(0);
+            int count = 0;
+            for (String w : words) {
+                if (w == null || w.isBlank()) continue;
+                String lw = lower(w);
+                int node = 0;
+                for (int i = 0; i < lw.length(); i++) {
+                    Integer nx = trie.get(node).get(lw.charAt(i));
+                    if (nx == null) {
+                        nx = trie.size();
+                        trie.add(new HashMap<>());
+                        depthEnd.add(0);
+                        trie.get(node).put(lw.charAt(i), nx);
+                    }
+                    node = nx;
+                }
+                depthEnd.set(node, lw.length());
+                count++;
+            }
+            if (count == 0) return null;
+
+            int size = trie.size();
+            char[][] keys = new char[size][];
+            int[][] next = new int[size][];
+            for (int i = 0; i < size; i++) {
+                Map<Character, Integer> m = trie.get(i);
+                char[] k = new char[m.size()];
+                int j = 0;
+                for (char c : m.keySet()) k[j++] = c;
+                Arrays.sort(k);
+                int[] v = new int[k.length];
+                for (j = 0; j < k.length; j++) v[j] = m.get(k[j]);
+                keys[i] = k;
+                next[i] = v;
+            }
+
+            int[] fail = new int[size];
+            int[] out = new int[size];
+            int[] queue = new int[size];
+            int head = 0, tail = 0;
+            for (int child : next[0]) {
+                queue[tail++] = child;
+                out[child] = depthEnd.get(child);
+            }
+            Matcher m = new Matcher(keys, next, fail, out, count);
+            while (head < tail) {
+                int node = queue[head++];
+                for (int j = 0; j < keys[node].length; j++) {
+                    char c = keys[node][j];
+                    int child = next[node][j];
+                    fail[child] = m.step(fail[node], c);
+                    out[child] = Math.max(depthEnd.get(child), out[fail[child]]);
+                    queue[tail++] = child;
+                }
+            }
+            return m;
+        }
+
+        // 照合側と同じく 1 文字ずつ小文字化する（ロケール依存の文字数変化を避ける）
+        private static String lower(String w) {
+            char[] cs = w.toCharArray();
+            for (int i = 0; i < cs.length; i++) cs[i] = Character.toLowerCase(cs[i]);
+            return new String(cs);
+        }
+
+        int step(int state, char c) {
+            while (true) {
+                int idx = Arrays.binarySearch(keys[state], c);
+                if (idx >= 0) return next[state][idx];
+                if (state == 0) return 0;
+                state = fail[state];
+            }
+        }
+
+        int longestMatch(int state) {
+            return out[state];
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package jp.atsukigames.discordbridge;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.List;
+
+// Webhook の execute 用ペイロード（不変）
+public record WebhookPayload(String username, String avatarUrl, String content, List<Embed> embeds) {
+    public record Embed(int color, String description) {}
+
+    static final int MAX_USERNAME = 80; // これを超える username は Discord が拒否する
+
+    public WebhookPayload {
+        username = truncate(username, MAX_USERNAME);
+        embeds = (embeds == null) ? List.of() : List.copyOf(embeds);
+    }
+
+    public static WebhookPayload content(String username, String content) {
+        return new WebhookPayload(username, null, content, List.of());
+    }
+
+    public static WebhookPayload embed(String username, int color, String description) {
+        return new WebhookPayload(username, null, null, List.of(new Embed(color, description)));
+    }
+
+    // サロゲートペアの途中では切らない
+    static String truncate(String s, int max) {
+        if (s == null || s.length() <= max) return s;
+        int end = Character.isHighSurrogate(s.charAt(max - 1)) ? max - 1 : max;
+        return s.substring(0, end);
+    }
+
+    public String toJson() {
+        JsonObject o = new JsonObject();
+        if (username != null) o.addProperty("username", username);
+        if (avatarUrl != null) o.addProperty("avatar_url", avatarUrl);
+        if (content != null) o.addProperty("content", content);
+        if (!embeds.isEmpty()) {
+            JsonArray arr = new JsonArray();
+            for (Embed e : embeds) {
+                JsonObject eo = new JsonObject();
+                eo.addProperty("color", e.color());
+                if (e.description() != null) eo.addProperty("description", e.description());
+                arr.add(eo);
+            }
+            o.add("embeds", arr);
+        }
+        // 本文に何が入っていてもメンション通知は飛ばさない
+        JsonObject mentions = new JsonObject();
+        mentions.add("parse", new JsonArray());
+        o.add("allowed_mentions", mentions);
+        return o.toString();
+    }
+}
@@ -0,0 +1,475 @@
+package jp.atsukigames.discordbridge;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+// 複数 Webhook へ送信を振り分けるプール。
+// X-RateLimit-* ヘッダを写したローカルのトークンバケットで先回りして待ち、429 を踏まないようにする。
+// 既定ではレーンごとに送信中は 1 件まで（前の応答を待ってから次）で、チャンネルに届く順序を保つ。
+// parallel なら空いている Webhook へ同じレーンの要求も並行に送る。速くなるが、前後の要求が入れ替わって届くことがある。
+// レーンは優先度順（STATUS > JOIN_QUIT > CHAT）に取り出すため、障害通知がチャットの後ろに並ぶことはない。
+// 再送待ちの先頭はそのレーンだけを止め、他のレーンは送り続ける。
+public final class WebhookSenderPool {
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int SPOOL_MAX_ATTEMPTS = 20; // 約 8 分。諦めた分はスプールに残し、送信が通るようになったら送り直す
+    private static final long RETRY_BASE_MS = 500;
+    private static final long RETRY_MAX_MS = 30_000;
+
+    public enum Lane { STATUS, JOIN_QUIT, CHAT }
+
+    // レーンごとの計測値
+    public static final class LaneStats {
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        void record(long latencyNanos) {
+            delivered.incrementAndGet();
+            latency.record(latencyNanos);
+        }
+
+        public long delivered() { return delivered.get(); }
+        public long rejected() { return rejected.get(); }
+        public LatencyHistogram latency() { return latency; } // キュー投入から送信完了まで（平均・最大もここから読む）
+    }
+
+    // Discord のレートリミットバケット（同じ bucket id を返すエンドポイント同士で共有）
+    private static final class Bucket {
+        int remaining = 1; // 未観測の間は 1 件ずつ様子見
+        long resetAtNanos = System.nanoTime();
+
+        boolean available(long now) {
+            return remaining > 0 || now - resetAtNanos >= 0;
+        }
+    }
+
+    private static final class Endpoint {
+        final String url;
+        Bucket bucket = new Bucket();
+        boolean busy; // 応答待ち
+
+        Endpoint(String url) {
+            this.url = url;
+        }
+    }
+
+    // 送信が失敗に終わった HTTP 応答（4xx など）。呼び出し側が状態コードで分岐できるように
+    public static final class HttpFailure extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        HttpFailure(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        public int status() { return status; }
+    }
+
+    private static final class Pending {
+        final Lane lane;
+        final String json;
+        final String method;
+        final String url; // null ならプールの送信先から選ぶ
+        final long enqueuedNanos = System.nanoTime();
+        long notBeforeNanos = enqueuedNanos; // 再送の待ち時間が明ける時刻
+        final CompletableFuture<String> future = new CompletableFuture<>(); // 応答本文
+        long spoolSeq = -1;
+        int attempts;
+
+        Pending(Lane lane, String json) {
+            this(lane, json, "POST", null);
+        }
+
+        Pending(Lane lane, String json, String method, String url) {
+            this.lane = lane;
+            this.json = json;
+            this.method = method;
+            this.url = url;
+        }
+    }
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final Map<String, Endpoint> fixedEndpoints = new HashMap<>(); // upsert の送信先 URL ごと
+    private final Map<String, Bucket> bucketsById = new HashMap<>();
+    private final Map<Lane, ArrayDeque<Pending>> lanes = new EnumMap<>(Lane.class);
+    private final Map<Lane, Integer> laneCapacity = new EnumMap<>(Lane.class);
+    private final Map<Lane, LaneStats> laneStats = new EnumMap<>(Lane.class);
+    private final WebhookTransport transport;
+    private final ScheduledExecutorService scheduler;
+    private final Logger logger;
+    private final OutboundSpool spool; // null ならディスクに残さない
+    private final boolean parallel; // 同じレーンを複数の Webhook へ並行に送る（順序は保証しない）
+
+    // 以下 this で保護
+    private int inFlight;
+    private final int[] laneInFlight = new int[Lane.values().length];
+    private int nextEndpoint;
+    private long globalBlockedUntilNanos = System.nanoTime();
+    private ScheduledFuture<?> wakeup;
+    private long wakeupAtNanos;
+    private final List<Pending> parked = new ArrayList<>(); // 再送を諦めたスプール分（送信が通るようになるまで預かる）
+    long retryBaseMs = RETRY_BASE_MS; // テストで縮める
+    long retryMaxMs = RETRY_MAX_MS;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final LatencyHistogram requestLatency = new LatencyHistogram(); // HTTP 1 往復
+
+    public WebhookSenderPool(List<String> urls, Map<Lane, Integer> capacities, WebhookTransport transport,
+                             ScheduledExecutorService scheduler, Logger logger, OutboundSpool spool) {
+        this(urls, capacities, transport, scheduler, logger, spool, false);
+    }
+
+    public WebhookSenderPool(List<String> urls, Map<Lane, Integer> capacities, WebhookTransport transport,
+                             ScheduledExecutorService scheduler, Logger logger, OutboundSpool spool, boolean parallel) {
+        for (String u : urls) endpoints.add(new Endpoint(u));
+        if (endpoints.isEmpty()) throw new IllegalArgumentException("webhook url is empty");
+        for (Lane lane : Lane.values()) {
+            lanes.put(lane, new ArrayDeque<>());
+            laneCapacity.put(lane, Math.max(1, capacities.getOrDefault(lane, 1000)));
+            laneStats.put(lane, new LaneStats());
+        }
+        this.transport = transport;
+        this.scheduler = scheduler;
+        this.logger = logger;
+        this.spool = spool;
+        this.parallel = parallel;
+    }
+
+    public CompletableFuture<Void> send(Lane lane, WebhookPayload payload) {
+        Pending p = new Pending(lane, payload.toJson());
+        enqueue(p, spool != null);
+        return p.future.thenAccept(body -> {});
+    }
+
+    // 1 通のメッセージを書き換え続ける用途（ダッシュボード）。messageId が null なら先頭の Webhook へ投稿し、
+    // あればそのメッセージを編集する。どちらも投稿・編集したメッセージの ID を返す。
+    // 最新の内容だけが意味を持つのでスプールには残さない。消されたメッセージの編集は HttpFailure(404) で失敗する
+    public CompletableFuture<String> upsert(Lane lane, String messageId, WebhookPayload payload) {
+        String base;
+        synchronized (this) {
+            base = endpoints.get(0).url;
+        }
+        Pending p = (messageId == null)
+                ? new Pending(lane, payload.toJson(), "POST", withQuery(base, "wait=true"))
+                : new Pending(lane, payload.toJson(), "PATCH", withPath(base, "/messages/" + messageId));
+        enqueue(p, false);
+        if (messageId != null) return p.future.thenApply(body -> messageId);
+        return p.future.thenApply(body -> JsonParser.parseString(body).getAsJsonObject().get("id").getAsString());
+    }
+
+    private void enqueue(Pending p, boolean spooled) {
+        synchronized (this) {
+            ArrayDeque<Pending> q = lanes.get(p.lane);
+            if (q.size() >= laneCapacity.get(p.lane)) {
+                rejected.incrementAndGet();
+                laneStats.get(p.lane).rejected.incrementAndGet();
+                p.future.completeExceptionally(new RejectedExecutionException("webhook queue full: " + p.lane));
+                return;
+            }
+            if (spooled) p.spoolSeq = spool.append(p.lane, p.json);
+            q.addLast(p);
+        }
+        dispatch();
+    }
+
+    // Webhook URL（?thread_id= などのクエリ付きもある）へのパス・クエリの追加
+    static String withPath(String url, String path) {
+        int q = url.indexOf('?');
+        return (q < 0) ? url + path : url.substring(0, q) + path + url.substring(q);
+    }
+
+    static String withQuery(String url, String param) {
+        return url + (url.indexOf('?') < 0 ? "?" : "&") + param;
+    }
+
+    // 設定の再読み込み用：キュー・スプール・送信中の要求はそのままに、送信先と上限だけ差し替える。
+    // 引き続き使う URL はレートリミットの観測値も引き継ぐ
+    public void reconfigure(List<String> urls, Map<Lane, Integer> capacities) {
+        if (urls.isEmpty()) throw new IllegalArgumentException("webhook url is empty");
+        synchronized (this) {
+            Map<String, Endpoint> old = new HashMap<>();
+            for (Endpoint e : endpoints) old.put(e.url, e);
+            endpoints.clear();
+            for (String u : urls) endpoints.add(old.getOrDefault(u, new Endpoint(u)));
+            nextEndpoint = 0;
+            fixedEndpoints.clear();
+            for (Lane lane : Lane.values()) {
+                laneCapacity.put(lane, Math.max(1, capacities.getOrDefault(lane, laneCapacity.get(lane))));
+            }
+            unpark(); // 送信先が変わったので、預かっている分も試し直す
+        }
+        dispatch();
+    }
+
+    // 前回終了時にスプールへ残っていた未送信分を、新しいメッセージより先に積む
+    public void replay(List<OutboundSpool.Entry> entries) {
+        synchronized (this) {
+            requeueFirst(entries);
+        }
+        dispatch();
+    }
+
+    // entries（スプールの順）をレーンの先頭へ、同じ順で積む
+    private void requeueFirst(List<OutboundSpool.Entry> entries) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            OutboundSpool.Entry e = entries.get(i);
+            Pending p = new Pending(e.lane(), e.json());
+            p.spoolSeq = e.seq();
+            lanes.get(e.lane()).addFirst(p);
+        }
+    }
+
+    // 預かっていた分を、キューに残っている新しいメッセージより先に送り直す（this で保護）
+    private void unpark() {
+        if (parked.isEmpty()) return;
+        List<OutboundSpool.Entry> entries = new ArrayList<>(parked.size());
+        for (Pending p : parked) entries.add(new OutboundSpool.Entry(p.spoolSeq, p.lane, p.json));
+        entries.sort((a, b) -> Long.compare(a.seq(), b.seq()));
+        parked.clear();
+        logger.info("Webhook is reachable again; resending " + entries.size() + " message(s) kept in the spool");
+        requeueFirst(entries);
+    }
+
+    // 停止時：キューが空になるか timeoutMs が経つまで待つ。空になったら true
+    public boolean awaitDrain(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        synchronized (this) {
+            while (inFlight > 0 || nextLane() != null) {
+                long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (left <= 0) return false;
+                wait(left);
+            }
+            return true;
+        }
+    }
+
+    // 優先度の高いレーンから先頭を返す
+    private ArrayDeque<Pending> nextLane() {
+        for (Lane lane : Lane.values()) {
+            ArrayDeque<Pending> q = lanes.get(lane);
+            if (!q.isEmpty()) return q;
+        }
+        return null;
+    }
+
+    private record Send(Endpoint ep, Pending p) {}
+
+    // 送れるだけ送る：優先度の高いレーンから、空いている Webhook へ先頭を割り当てる
+    private void dispatch() {
+        List<Send> sends = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (globalBlockedUntilNanos - now > 0) {
+                if (nextLane() != null) scheduleWakeup(globalBlockedUntilNanos - now);
+                return;
+            }
+            long wait = Long.MAX_VALUE;
+            lanes:
+            for (Lane lane : Lane.values()) {
+                ArrayDeque<Pending> queue = lanes.get(lane);
+                Pending head;
+                while ((head = queue.peekFirst()) != null) {
+                    if (!parallel && laneInFlight[lane.ordinal()] > 0) break;
+                    if (head.notBeforeNanos - now > 0) {
+                        wait = Math.min(wait, head.notBeforeNanos - now);
+                        break;
+                    }
+                    Endpoint ep;
+                    if (head.url != null) {
+                        // 送信先が決まっている要求はそのバケットが空くまで待つ（レーン内の順序を守る）
+                        ep = fixedEndpoints.computeIfAbsent(head.url, Endpoint::new);
+                        if (ep.busy) break;
+                        if (!ep.bucket.available(now)) {
+                            wait = Math.min(wait, ep.bucket.resetAtNanos - now);
+                            break;
+                        }
+                    } else {
+                        ep = pickEndpoint(now);
+                        if (ep == null) {
+                            // 空いている Webhook が無い。応答待ちのものは応答で、バケット待ちのものはリセットで起こす
+                            for (Endpoint e : endpoints) {
+                                if (!e.busy) wait = Math.min(wait, e.bucket.resetAtNanos - now);
+                            }
+                            break lanes; // 下位のレーンも同じ Webhook を使うので待つ
+                        }
+                    }
+                    if (ep.bucket.remaining <= 0) ep.bucket.remaining = 1; // リセット済み: 次の応答で正しい値に戻る
+                    ep.bucket.remaining--;
+                    ep.busy = true;
+                    queue.pollFirst();
+                    inFlight++;
+                    laneInFlight[lane.ordinal()]++;
+                    sends.add(new Send(ep, head));
+                }
+            }
+            if (wait != Long.MAX_VALUE) scheduleWakeup(Math.max(0, wait));
+        }
+        for (Send s : sends) execute(s.ep(), s.p());
+    }
+
+    private void execute(Endpoint target, Pending p) {
+        final long sentNanos = System.nanoTime();
+        CompletableFuture<WebhookTransport.Response> f;
+        try {
+            f = transport.execute(p.method, target.url, p.json);
+        } catch (RuntimeException ex) {
+            f = CompletableFuture.failedFuture(ex);
+        }
+        f.whenComplete((res, err) -> {
+            requestLatency.record(System.nanoTime() - sentNanos);
+            onResponse(target, p, res, err);
+        });
+    }
+
+    // ラウンドロビンで応答待ちでなく、空きのあるバケットを選ぶ。無ければ null
+    private Endpoint pickEndpoint(long now) {
+        int n = endpoints.size();
+        for (int i = 0; i < n; i++) {
+            Endpoint e = endpoints.get((nextEndpoint + i) % n);
+            if (!e.busy && e.bucket.available(now)) {
+                nextEndpoint = (nextEndpoint + i + 1) % n;
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private void scheduleWakeup(long delayNanos) {
+        long now = System.nanoTime();
+        long at = now + delayNanos;
+        // 実行中の起床（予定時刻を過ぎたもの）からの呼び出しでは、次の起床を必ず予約する
+        if (wakeup != null && !wakeup.isDone() && wakeupAtNanos - now > 0 && at - wakeupAtNanos >= 0) return;
+        if (wakeup != null) wakeup.cancel(false);
+        delayed.incrementAndGet();
+        wakeupAtNanos = at;
+        wakeup = scheduler.schedule(this::dispatch, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void onResponse(Endpoint ep, Pending p, WebhookTransport.Response res, Throwable err) {
+        synchronized (this) {
+            ep.busy = false;
+            inFlight--;
+            laneInFlight[p.lane.ordinal()]--;
+            if (res != null) updateBucket(ep, res);
+
+            if (err == null && res != null && res.status() / 100 == 2) {
+                sent.incrementAndGet();
+                laneStats.get(p.lane).record(System.nanoTime() - p.enqueuedNanos);
+                if (spool != null) spool.ack(p.spoolSeq);
+                p.future.complete(res.body());
+                unpark();
+            } else if (res != null && res.status() == 429) {
+                rateLimited.incrementAndGet();
+                long retryMs = retryAfterMs(res);
+                long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryMs);
+                if ("true".equalsIgnoreCase(res.header("X-RateLimit-Global"))) {
+                    globalBlockedUntilNanos = until;
+                } else {
+                    ep.bucket.remaining = 0;
+                    ep.bucket.resetAtNanos = until;
+                }
+                lanes.get(p.lane).addFirst(p); // 429 は試行回数に数えず先頭へ戻す
+            } else if (isRetryable(res, err) && ++p.attempts < (p.spoolSeq > 0 ? SPOOL_MAX_ATTEMPTS : MAX_ATTEMPTS)) {
+                // 順序を守るため先頭に戻し、待ち時間が明けるまでこのレーンだけを止める
+                long delayMs = Math.min(retryMaxMs, retryBaseMs << Math.min(p.attempts - 1, 6));
+                p.notBeforeNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+                lanes.get(p.lane).addFirst(p);
+            } else {
+                failed.incrementAndGet();
+                String reason = (err != null) ? err.toString() : ("HTTP " + res.status() + " " + res.body());
+                // 障害で送れなかったスプール分は記録に残して預かり、次に送信が通ったとき（再設定・次の起動でも）送り直す。
+                // 再送しても通らないものは外す
+                boolean keep = p.spoolSeq > 0 && isRetryable(res, err);
+                logger.warning("Webhook send failed" + (keep ? " (kept in the spool)" : "") + ": " + reason);
+                if (keep) parked.add(p);
+                else if (spool != null) spool.ack(p.spoolSeq);
+                p.future.completeExceptionally(err != null ? err : new HttpFailure(res.status(), reason));
+            }
+            notifyAll();
+        }
+        dispatch();
+    }
+
+    // 通信エラーと 5xx は再送対象。不正な URL などはそのまま失敗にする
+    private static boolean isRetryable(WebhookTransport.Response res, Throwable err) {
+        if (err == null) return res.status() >= 500;
+        Throwable t = err;
+        while (t instanceof CompletionException && t.getCause() != null) t = t.getCause();
+        return t instanceof IOException;
+    }
+
+    // X-RateLimit-* をローカルのバケットへ写す
+    private void updateBucket(Endpoint ep, WebhookTransport.Response res) {
+        String id = res.header("X-RateLimit-Bucket");
+        if (id != null) {
+            Bucket shared = bucketsById.putIfAbsent(id, ep.bucket);
+            if (shared != null && shared != ep.bucket) ep.bucket = shared;
+        }
+        String remaining = res.header("X-RateLimit-Remaining");
+        String resetAfter = res.header("X-RateLimit-Reset-After");
+        try {
+            if (remaining != null) ep.bucket.remaining = Integer.parseInt(remaining.trim());
+            else ep.bucket.remaining = Math.max(ep.bucket.remaining, 1);
+            if (resetAfter != null) {
+                long ms = (long) (Double.parseDouble(resetAfter.trim()) * 1000);
+                ep.bucket.resetAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ms);
+            }
+        } catch (NumberFormatException ignored) {}
+    }
+
+    private static long retryAfterMs(WebhookTransport.Response res) {
+        try {
+            String h = res.header("Retry-After");
+            if (h != null) return (long) (Double.parseDouble(h.trim()) * 1000);
+            if (res.body() != null && !res.body().isBlank()) {
+                JsonObject o = JsonParser.parseString(res.body()).getAsJsonObject();
+                if (o.has("retry_after")) return (long) (o.get("retry_after").getAsDouble() * 1000);
+            }
+        } catch (RuntimeException ignored) {}
+        return 1000;
+    }
+
+    public synchronized int queueDepth(Lane lane) {
+        return lanes.get(lane).size();
+    }
+
+    public synchronized int queueDepth() {
+        int n = 0;
+        for (ArrayDeque<Pending> q : lanes.values()) n += q.size();
+        return n;
+    }
+
+    public LaneStats laneStats(Lane lane) {
+        return laneStats.get(lane);
+    }
+
+    public synchronized int endpointCount() { return endpoints.size(); }
+    public synchronized int parked() { return parked.size(); }
+    public LatencyHistogram requestLatency() { return requestLatency; }
+    public long sent() { return sent.get(); }
+    public long rateLimited() { return rateLimited.get(); }
+    public long delayed() { return delayed.get(); }
+    public long rejected() { return rejected.get(); }
+    public long failed() { return failed.get(); }
+}
@@ -0,0 +1,53 @@
+package jp.atsukigames.discordbridge;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+// Webhook への HTTP 送信。差し替え可能にしておき、オフライン計測では偽物を挿す
+public interface WebhookTransport {
+    CompletableFuture<Response> execute(String method, String url, String jsonBody);
+
+    record Response(int status, Map<String, String> headers, String body) {
+        public String header(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    // java.net.http による実装
+    final class Http implements WebhookTransport {
+        private final HttpClient client;
+
+        public Http(Executor executor) {
+            this.client = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .executor(executor)
+                    .build();
+        }
+
+        @Override
+        public CompletableFuture<Response> execute(String method, String url, String jsonBody) {
+            HttpRequest req = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofSeconds(15))
+                    .header("Content-Type", "application/json")
+                    .header("User-Agent", "DiscordBridge")
+                    .method(method, HttpRequest.BodyPublishers.ofString(jsonBody))
+                    .build();
+            return client.sendAsync(req, HttpResponse.BodyHandlers.ofString()).thenApply(res -> {
+                Map<String, String> headers = new HashMap<>();
+                for (Map.Entry<String, List<String>> e : res.headers().map().entrySet()) {
+                    if (!e.getValue().isEmpty()) headers.put(e.getKey().toLowerCase(Locale.ROOT), e.getValue().get(0));
+                }
+                return new Response(res.statusCode(), headers, res.body());
+            });
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BridgeExecutorsTest {
+    // 溢れた io の仕事は捨てずに呼び出し元で実行され、待っている Future は必ず完了する
+    @Test
+    void ioNeverDropsWorkEvenWithADiscardPolicy() throws Exception {
+        BridgeExecutors.Settings s = new BridgeExecutors.Settings();
+        s.ioThreads = 1;
+        s.ioQueue = 1;
+        s.rejection = BridgeExecutors.Rejection.DISCARD;
+        BridgeExecutors executors = new BridgeExecutors(s, Logger.getLogger("test"));
+        try {
+            List<CompletableFuture<Integer>> fs = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                final int n = i;
+                fs.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return n;
+                }, executors.io()));
+            }
+            int sum = 0;
+            for (CompletableFuture<Integer> f : fs) sum += f.get(10, TimeUnit.SECONDS);
+            assertEquals(49 * 50 / 2, sum);
+            assertTrue(executors.rejected() > 0, "the queue never overflowed");
+        } finally {
+            executors.shutdown();
+        }
+    }
+}
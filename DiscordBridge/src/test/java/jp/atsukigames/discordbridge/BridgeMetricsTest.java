@@ -0,0 +1,80 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BridgeMetricsTest {
+    @Test
+    void countersAreSharedPerNameAndLabels() {
+        BridgeMetrics m = new BridgeMetrics();
+        LongAdder a = m.counter("x_total", "help", "route", "a");
+        assertSame(a, m.counter("x_total", "help", "route", "a"));
+        LongAdder b = m.counter("x_total", "help", "route", "b");
+        a.add(2);
+        b.increment();
+
+        String text = m.prometheus();
+        assertTrue(text.contains("x_total{route=\"a\"} 2\n"), text);
+        assertTrue(text.contains("x_total{route=\"b\"} 1\n"), text);
+        assertEquals(1, count(text, "# TYPE x_total counter\n"), text);
+    }
+
+    // 読み出しのたびに Collector から拾う（部品が入れ替わっても最新を出す）
+    @Test
+    void collectorsAreReadOnEveryScrape() {
+        BridgeMetrics m = new BridgeMetrics();
+        int[] depth = {3};
+        m.register(out -> out.gauge("queue_depth", "pending", depth[0], "lane", "CHAT"));
+        assertTrue(m.prometheus().contains("queue_depth{lane=\"CHAT\"} 3\n"));
+        depth[0] = 7;
+        assertTrue(m.prometheus().contains("queue_depth{lane=\"CHAT\"} 7\n"));
+        assertTrue(m.prometheus().contains("# TYPE queue_depth gauge\n"));
+    }
+
+    @Test
+    void latencyIsExportedInSeconds() {
+        BridgeMetrics m = new BridgeMetrics();
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) h.record(TimeUnit.MILLISECONDS.toNanos(250));
+        m.register(out -> out.latency("send_seconds", "send time", h));
+
+        String text = m.prometheus();
+        assertTrue(text.contains("# TYPE send_seconds summary\n"), text);
+        assertTrue(text.contains("send_seconds_count 100\n"), text);
+        assertTrue(text.contains("send_seconds_sum 25\n"), text);
+        String p99 = line(text, "send_seconds{quantile=\"0.99\"}");
+        double v = Double.parseDouble(p99.substring(p99.lastIndexOf(' ') + 1));
+        assertTrue(Math.abs(v - 0.25) < 0.25 / 64, p99);
+
+        List<String> summary = m.summary();
+        assertEquals(1, summary.size());
+        assertTrue(summary.get(0).startsWith("send_seconds n=100 p50=250.0ms"), summary.get(0));
+    }
+
+    @Test
+    void labelValuesAreEscaped() {
+        BridgeMetrics m = new BridgeMetrics();
+        m.counter("y_total", "help", "server", "a\"b\\c\nd").increment();
+        assertTrue(m.prometheus().contains("y_total{server=\"a\\\"b\\\\c\\nd\"} 1\n"), m.prometheus());
+    }
+
+    private static int count(String text, String part) {
+        int n = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) n++;
+        return n;
+    }
+
+    private static String line(String text, String prefix) {
+        for (String l : text.split("\n")) {
+            if (l.startsWith(prefix)) return l;
+        }
+        throw new AssertionError("no line " + prefix + " in\n" + text);
+    }
+}
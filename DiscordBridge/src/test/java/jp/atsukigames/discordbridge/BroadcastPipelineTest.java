@@ -0,0 +1,42 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BroadcastPipelineTest {
+    private static final int PLAYERS = 200;
+    private static final int MESSAGES = 20;
+
+    // format プールを溢れさせても（どの rejection 設定でも）配信が止まらず、全員に全件届く
+    @Test
+    void saturatedFormatPoolNeverStallsTheRelay() throws InterruptedException {
+        for (BridgeExecutors.Rejection policy : BridgeExecutors.Rejection.values()) {
+            BridgeExecutors.Settings s = new BridgeExecutors.Settings();
+            s.formatThreads = 1;
+            s.formatQueue = 1;
+            s.rejection = policy;
+            BridgeExecutors executors = new BridgeExecutors(s, Logger.getLogger("test"));
+            try (FakeProxy proxy = new FakeProxy(PLAYERS, 2, true)) {
+                // 1 tick に 1 件、10 人ずつ 20 チャンクに分けて配る
+                BroadcastPipeline b = new BroadcastPipeline(proxy.proxy(), new Object(), executors.format(), 50, 1000, 1, 10);
+                b.start();
+                for (int i = 0; i < MESSAGES; i++) b.submit("user", "m" + i, null);
+                long deadline = System.currentTimeMillis() + 5000;
+                while (b.delivered() < MESSAGES && System.currentTimeMillis() < deadline) {
+                    proxy.tick();
+                    Thread.sleep(1);
+                }
+                b.stop();
+                assertEquals(MESSAGES, b.delivered(), policy.toString());
+                assertEquals((long) MESSAGES * PLAYERS, proxy.messagesDelivered(), policy.toString());
+                assertTrue(executors.rejected() > 0, policy + ": the pool never overflowed");
+            } finally {
+                executors.shutdown();
+            }
+        }
+    }
+}
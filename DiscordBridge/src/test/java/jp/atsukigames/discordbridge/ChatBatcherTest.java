@@ -0,0 +1,148 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatBatcherTest {
+    private record Sent(String username, String avatarUrl, String content) {}
+
+    private final FakeProxy proxy = new FakeProxy(0, 0, false);
+    private final List<Sent> sent = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void close() {
+        proxy.close();
+    }
+
+    // ウィンドウは長くしておき、flush() を手で呼ぶ
+    private ChatBatcher batcher(int maxQueue, ChatBatcher.OverflowPolicy policy) {
+        return new ChatBatcher(proxy.proxy(), new Object(), (u, a, c) -> sent.add(new Sent(u, a, c)), 60_000, maxQueue, policy);
+    }
+
+    @Test
+    void coalescesConsecutiveLinesPerSender() {
+        ChatBatcher b = batcher(100, ChatBatcher.OverflowPolicy.DROP_OLDEST);
+        b.submit("[lobby]alice", "a1");
+        b.submit("[lobby]alice", "a2");
+        b.submit("[lobby]bob", "b1");
+        b.submit("[lobby]alice", "a3");
+        b.flush();
+
+        assertEquals(List.of(new Sent("[lobby]alice", null, "a1\na2"), new Sent("[lobby]bob", null, "b1"),
+                new Sent("[lobby]alice", null, "a3")), sent);
+        assertEquals(1, b.flushes());
+        assertEquals(4, b.linesFlushed());
+        assertEquals(3, b.messagesSent());
+        assertEquals(4, b.maxBatchSize());
+        assertEquals(1, b.flushLatency().count());
+    }
+
+    @Test
+    void differentAvatarsAreDifferentSenders() {
+        ChatBatcher b = batcher(100, ChatBatcher.OverflowPolicy.DROP_OLDEST);
+        b.submit("alice", "https://a/1", "x");
+        b.submit("alice", "https://a/2", "y");
+        b.flush();
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    void staysWithinTheContentLimit() {
+        ChatBatcher b = batcher(1000, ChatBatcher.OverflowPolicy.DROP_OLDEST);
+        String line = "x".repeat(300);
+        for (int i = 0; i < 20; i++) b.submit("alice", line);
+        b.submit("alice", "y".repeat(ChatBatcher.MAX_CONTENT * 2 + 10)); // 1 行でも上限を超える
+        b.flush();
+
+        int total = 0;
+        for (Sent s : sent) {
+            assertTrue(s.content().length() <= ChatBatcher.MAX_CONTENT, "message over the limit: " + s.content().length());
+            total += s.content().replace("\n", "").length();
+        }
+        assertEquals(20 * 300 + ChatBatcher.MAX_CONTENT * 2 + 10, total);
+        assertTrue(sent.size() < 21, "lines were not merged: " + sent.size());
+    }
+
+    @Test
+    void dropOldestKeepsTheNewestLines() {
+        ChatBatcher b = batcher(2, ChatBatcher.OverflowPolicy.DROP_OLDEST);
+        b.submit("a", "1");
+        b.submit("b", "2");
+        b.submit("c", "3");
+        b.flush();
+        assertEquals(List.of(new Sent("b", null, "2"), new Sent("c", null, "3")), sent);
+        assertEquals(1, b.dropped());
+    }
+
+    @Test
+    void dropNewestKeepsTheOldestLines() {
+        ChatBatcher b = batcher(2, ChatBatcher.OverflowPolicy.DROP_NEWEST);
+        b.submit("a", "1");
+        b.submit("b", "2");
+        b.submit("c", "3");
+        b.flush();
+        assertEquals(List.of(new Sent("a", null, "1"), new Sent("b", null, "2")), sent);
+        assertEquals(1, b.dropped());
+    }
+
+    @Test
+    void mergeFoldsTheSameSenderIntoTheLastLine() {
+        ChatBatcher b = batcher(1, ChatBatcher.OverflowPolicy.MERGE);
+        b.submit("a", "1");
+        b.submit("a", "2");
+        b.submit("b", "3"); // 別の送信者は最も古い行を押し出す
+        b.flush();
+        assertEquals(List.of(new Sent("b", null, "3")), sent);
+        assertEquals(1, b.merged());
+        assertEquals(1, b.dropped());
+    }
+
+    @Test
+    void zeroWindowSendsImmediately() {
+        ChatBatcher b = new ChatBatcher(proxy.proxy(), new Object(), (u, a, c) -> sent.add(new Sent(u, a, c)), 0, 10,
+                ChatBatcher.OverflowPolicy.DROP_OLDEST);
+        b.submit("a", "1");
+        assertEquals(1, sent.size());
+        assertEquals(0, b.queueDepth());
+    }
+
+    @Test
+    void scheduledFlushSendsAfterTheWindow() throws InterruptedException {
+        ChatBatcher b = new ChatBatcher(proxy.proxy(), new Object(), (u, a, c) -> sent.add(new Sent(u, a, c)), 50, 10,
+                ChatBatcher.OverflowPolicy.DROP_OLDEST);
+        b.submit("a", "1");
+        b.submit("a", "2");
+        assertTrue(sent.isEmpty());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sent.isEmpty() && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(List.of(new Sent("a", null, "1\n2")), sent);
+    }
+
+    @Test
+    void splitKeepsEveryCharacterWithinTheLimit() {
+        String text = "a".repeat(ChatBatcher.MAX_CONTENT * 2 + 5);
+        List<String> chunks = ChatBatcher.split(text);
+        assertEquals(3, chunks.size());
+        for (String c : chunks) assertTrue(c.length() <= ChatBatcher.MAX_CONTENT);
+        assertEquals(text, String.join("", chunks));
+        assertEquals(List.of("short"), ChatBatcher.split("short"));
+    }
+
+    // 絵文字（サロゲートペア）を境目で割らない
+    @Test
+    void splitNeverBreaksASurrogatePair() {
+        String text = "a" + "😀".repeat(ChatBatcher.MAX_CONTENT);
+        List<String> chunks = ChatBatcher.split(text);
+        assertEquals(text, String.join("", chunks));
+        for (String c : chunks) {
+            assertTrue(c.length() <= ChatBatcher.MAX_CONTENT);
+            assertTrue(!Character.isHighSurrogate(c.charAt(c.length() - 1)) && !Character.isLowSurrogate(c.charAt(0)), "split inside a pair");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterCoordinatorTest {
+    private static final Logger LOGGER = Logger.getLogger("test");
+    private static final AtomicInteger HUBS = new AtomicInteger();
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private final List<ClusterCoordinator> nodes = new ArrayList<>();
+    private final List<String> relays = new CopyOnWriteArrayList<>();
+    private final String hub = "test-" + HUBS.incrementAndGet();
+
+    @AfterEach
+    void close() {
+        nodes.forEach(ClusterCoordinator::close);
+        scheduler.shutdownNow();
+    }
+
+    private ClusterCoordinator node(String id) throws Exception {
+        ClusterCoordinator.Settings s = new ClusterCoordinator.Settings();
+        s.nodeId = id;
+        s.heartbeatMs = 100;
+        s.leaderTimeoutMs = 400;
+        s.claimWindowMs = 100;
+        ClusterCoordinator c = new ClusterCoordinator(s, new ClusterTransport.Local(hub), scheduler,
+                new ClusterCoordinator.Listener() {
+                    @Override
+                    public void onLeaderChange(boolean isLeader) {}
+
+                    @Override
+                    public void onRelay(String msgId, Map<String, String> data) {
+                        relays.add(id + ":" + msgId);
+                    }
+                }, LOGGER);
+        c.start();
+        nodes.add(c);
+        return c;
+    }
+
+    private static void await(BooleanSupplier cond) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!cond.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(20);
+        }
+    }
+
+    // 生存ノードのうち nodeId が最小のものだけがリーダー。落ちたら次のノードが引き継ぐ
+    @Test
+    void lowestLiveNodeLeads() throws Exception {
+        ClusterCoordinator a = node("a");
+        ClusterCoordinator b = node("b");
+        ClusterCoordinator c = node("c");
+        await(() -> a.isLeader() && b.peerCount() == 2);
+        assertFalse(b.isLeader());
+        assertFalse(c.isLeader());
+
+        a.close();
+        await(b::isLeader);
+        assertFalse(c.isLeader());
+    }
+
+    // 同じ出来事を全ノードが送ろうとしても実行されるのは 1 回だけ
+    @Test
+    void claimRunsOnceAcrossTheCluster() throws Exception {
+        List<ClusterCoordinator> all = List.of(node("a"), node("b"), node("c"));
+        await(() -> all.stream().allMatch(n -> n.peerCount() == 2));
+        AtomicInteger runs = new AtomicInteger();
+        for (ClusterCoordinator n : all) n.claim("join:steve", runs::incrementAndGet);
+        Thread.sleep(400);
+        assertEquals(1, runs.get());
+        assertEquals(2, all.stream().mapToLong(ClusterCoordinator::suppressed).sum());
+    }
+
+    @Test
+    void relayIsDeliveredOncePerNode() throws Exception {
+        ClusterCoordinator a = node("a");
+        node("b");
+        node("c");
+        assertTrue(a.firstSeen("m1"));
+        a.relay("m1", Map.of("content", "hi"));
+        a.relay("m1", Map.of("content", "hi"));
+        assertEquals(List.of("b:m1", "c:m1"), relays.stream().sorted().toList());
+    }
+
+    @Test
+    void udpRefusesToStartWithoutASecret() {
+        assertThrows(IllegalArgumentException.class, () -> new ClusterTransport.Udp(null, 0, List.of(), "", 30_000, LOGGER));
+    }
+
+    // 署名の合わないもの、時刻が窓の外のもの、同じデータグラムの 2 度目は受け付けない
+    @Test
+    void udpRejectsForgedStaleAndReplayedDatagrams() {
+        ClusterTransport.Udp sender = new ClusterTransport.Udp(null, 0, List.of(), "shared", 30_000, LOGGER);
+        ClusterTransport.Udp receiver = new ClusterTransport.Udp(null, 0, List.of(), "shared", 30_000, LOGGER);
+        ClusterTransport.Udp stranger = new ClusterTransport.Udp(null, 0, List.of(), "other", 30_000, LOGGER);
+        byte[] json = "{\"type\":\"HEARTBEAT\",\"node\":\"a\"}".getBytes(StandardCharsets.UTF_8);
+        long now = 1_000_000_000L;
+
+        byte[] fresh = sender.seal(json, now);
+        assertNotNull(receiver.open(fresh, now + 100));
+        assertNull(receiver.open(fresh, now + 200), "replayed");
+        assertNull(receiver.open(sender.seal(json, now - 60_000), now), "too old");
+        assertNull(receiver.open(stranger.seal(json, now), now), "wrong secret");
+
+        byte[] tampered = sender.seal(json, now + 1);
+        tampered[3] ^= 1; // 時刻も署名の対象
+        assertNull(receiver.open(tampered, now));
+        assertNotNull(receiver.open(sender.seal(json, now + 2), now));
+    }
+}
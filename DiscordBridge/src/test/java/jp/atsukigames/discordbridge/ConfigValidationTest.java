@@ -0,0 +1,67 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConfigValidationTest {
+    private static final String HOOK = "https://discord.com/api/webhooks/1/a";
+
+    private static DiscordService.Config webhookOnly() {
+        DiscordService.Config c = new DiscordService.Config();
+        c.botToken = null;
+        c.channelId = "100";
+        c.webhookUrl = HOOK;
+        return c;
+    }
+
+    private static RoutingTable.RouteSettings route(String name, String channelId, String webhookUrl) {
+        RoutingTable.RouteSettings r = new RoutingTable.RouteSettings();
+        r.name = name;
+        r.servers = List.of("lobby");
+        r.channelId = channelId;
+        r.webhookUrl = webhookUrl;
+        return r;
+    }
+
+    @Test
+    void webhookOnlyConfigIsAccepted() {
+        DiscordService.Config c = webhookOnly();
+        c.routes = List.of(route("survival", "200", "https://discord.com/api/webhooks/2/b"));
+        assertEquals(List.of(), DiscordService.validate(c));
+    }
+
+    // ボットが無いと、チャンネルだけのルートへ送る手段が無い（既定ルートの Webhook へ流すと別のチャンネルに出る）
+    @Test
+    void channelOnlyRouteNeedsABotToken() {
+        DiscordService.Config c = webhookOnly();
+        c.routes = List.of(route("survival", "200", null));
+        List<String> errors = DiscordService.validate(c);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).contains("survival"), errors.toString());
+
+        c.botToken = "token";
+        assertEquals(List.of(), DiscordService.validate(c));
+    }
+
+    @Test
+    void defaultChannelWithoutWebhookNeedsABotToken() {
+        DiscordService.Config c = webhookOnly();
+        c.webhookUrl = null;
+        c.routes = List.of(route("survival", "200", "https://discord.com/api/webhooks/2/b"));
+        assertEquals(1, DiscordService.validate(c).size());
+    }
+
+    @Test
+    void udpClusterNeedsASecret() {
+        DiscordService.Config c = webhookOnly();
+        c.cluster.enabled = true;
+        assertEquals(1, DiscordService.validate(c).size());
+
+        c.cluster.secret = "shared";
+        assertEquals(List.of(), DiscordService.validate(c));
+    }
+}
@@ -0,0 +1,121 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 秒単位の既定値をミリ秒単位へ縮めた偽バックエンドで、停止の検知の遅れと ping の回数を測る
+class HealthMonitorTest {
+    private static final long INTERVAL_MS = 200;
+    private static final long MAX_INTERVAL_MS = 300;
+    private static final long FAIL_INTERVAL_MS = 100;
+    private static final long TIMEOUT_MS = 100;
+
+    private final FakeProxy proxy = new FakeProxy(0, 4, false);
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ConcurrentMap<String, Long> downAtNanos = new ConcurrentHashMap<>();
+    private HealthMonitor monitor;
+
+    @AfterEach
+    void close() {
+        if (monitor != null) monitor.stop();
+        scheduler.shutdownNow();
+        proxy.close();
+    }
+
+    private HealthMonitor start() {
+        HealthMonitor.Settings s = new HealthMonitor.Settings();
+        s.intervalSec = INTERVAL_MS / 1000.0;
+        s.maxIntervalSec = MAX_INTERVAL_MS / 1000.0;
+        s.failIntervalSec = FAIL_INTERVAL_MS / 1000.0;
+        s.timeoutSec = TIMEOUT_MS / 1000.0;
+        s.jitter = 0.0;
+        s.passiveWindowSec = 0.0;
+        monitor = new HealthMonitor(proxy.proxy(), scheduler, s, Map.of(), (server, isUp) -> {
+            if (!isUp) downAtNanos.putIfAbsent(server, System.nanoTime());
+        });
+        monitor.warmup().join();
+        monitor.start();
+        return monitor;
+    }
+
+    @Test
+    void backoffIsCappedSoDetectionStaysBounded() throws InterruptedException {
+        HealthMonitor m = start();
+        Thread.sleep(1500); // 間隔が上限まで伸びきるのを待つ
+        String victim = proxy.serverNames().get(0);
+        long stoppedAt = System.nanoTime();
+        proxy.setDown(victim, true);
+
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!downAtNanos.containsKey(victim) && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        Long detected = downAtNanos.get(victim);
+        assertNotNull(detected, "stopped server was never reported");
+        long ms = TimeUnit.NANOSECONDS.toMillis(detected - stoppedAt);
+        assertTrue(ms <= MAX_INTERVAL_MS + 150, "detection took " + ms + "ms");
+        assertEquals(Boolean.FALSE, m.isOnline(victim));
+        assertEquals(1, downAtNanos.size());
+    }
+
+    @Test
+    void probeLoadFollowsTheIntervals() throws InterruptedException {
+        start();
+        Thread.sleep(1500);
+        long before = proxy.pings();
+        Thread.sleep(1500);
+        long pings = proxy.pings() - before;
+        int servers = proxy.serverNames().size();
+        // 伸びきった後は 1 台あたり 1500 / 300 = 5 回ほど。固定間隔（200ms）なら 7.5 回
+        assertTrue(pings >= servers * 4L && pings <= servers * 6L, "pings in 1.5s: " + pings);
+
+        // 落ちたサーバーは failInterval ごとに確かめ直す
+        String victim = proxy.serverNames().get(0);
+        proxy.setDown(victim, true);
+        Thread.sleep(500);
+        before = proxy.pings();
+        Thread.sleep(1000);
+        long withDown = proxy.pings() - before;
+        assertTrue(withDown > pings * 2 / 3, "down server was not re-checked more often: " + withDown);
+    }
+
+    @Test
+    void probingResumesAfterTheServerReappears() throws InterruptedException {
+        start();
+        List<String> names = proxy.serverNames();
+        for (String n : names.subList(1, names.size())) proxy.setRegistered(n, false);
+        String victim = names.get(0);
+        proxy.setRegistered(victim, false);
+        Thread.sleep(600); // 見えない間も予約は続く
+        proxy.setRegistered(victim, true);
+        long before = proxy.pings();
+        proxy.setDown(victim, true);
+
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!downAtNanos.containsKey(victim) && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertTrue(proxy.pings() > before, "probe was dropped while the server was unregistered");
+        assertTrue(downAtNanos.containsKey(victim));
+    }
+
+    // 接続のたびの受動シグナルは、状態が変わったときだけ履歴に残る
+    @Test
+    void passiveSignalsAreRecordedOnlyOnChange() {
+        List<HealthMonitor.Sample> samples = new CopyOnWriteArrayList<>();
+        HealthMonitor m = new HealthMonitor(proxy.proxy(), scheduler, new HealthMonitor.Settings(), Map.of(), (server, isUp) -> {},
+                (server, kind, latency, online, transition) -> samples.add(kind));
+        for (int i = 0; i < 100; i++) m.onPassiveSuccess("lobby");
+        assertEquals(List.of(HealthMonitor.Sample.PASSIVE_OK), samples);
+        assertEquals(100, m.passiveSignals());
+    }
+}
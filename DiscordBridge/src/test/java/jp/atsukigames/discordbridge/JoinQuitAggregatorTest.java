@@ -0,0 +1,70 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JoinQuitAggregatorTest {
+    private final FakeProxy proxy = new FakeProxy(0, 0, false);
+    private final List<String> singles = new CopyOnWriteArrayList<>();
+    private final List<List<String>> summaries = new CopyOnWriteArrayList<>(); // [参加..., "|", 退出...]
+
+    @AfterEach
+    void close() {
+        proxy.close();
+    }
+
+    private JoinQuitAggregator aggregator(int threshold) {
+        return new JoinQuitAggregator(proxy.proxy(), new Object(), new JoinQuitAggregator.Sink() {
+            @Override
+            public void single(String player, boolean isJoin) {
+                singles.add((isJoin ? "+" : "-") + player);
+            }
+
+            @Override
+            public void summary(List<String> joined, List<String> left) {
+                List<String> all = new ArrayList<>(joined);
+                all.add("|");
+                all.addAll(left);
+                summaries.add(all);
+            }
+        }, 60_000, threshold);
+    }
+
+    @Test
+    void stormIsFoldedIntoOneSummary() {
+        JoinQuitAggregator a = aggregator(3);
+        a.submit("p1", true);
+        a.submit("p2", true);
+        a.submit("p3", true); // ここから嵐
+        a.submit("p4", false);
+        a.submit("p5", true);
+        a.submit("p5", false); // 相殺
+        a.flush();
+
+        assertEquals(List.of("+p1", "+p2"), singles);
+        assertEquals(List.of(List.of("p3", "|", "p4")), summaries);
+        assertEquals(2, a.cancelled());
+        assertEquals(3, a.discordCalls());
+    }
+
+    // 嵐の名前一覧は予算に収まるだけ並べ、残りを「他N人」にする。ボット経由の 2000 文字でも溢れない
+    @Test
+    void namesFitTheBudget() {
+        List<String> players = new ArrayList<>();
+        for (int i = 0; i < 500; i++) players.add("player_" + i);
+        for (int budget : new int[]{ChatBatcher.MAX_CONTENT - 256, JoinQuitAggregator.MAX_DESCRIPTION - 256}) {
+            String names = JoinQuitAggregator.names(players, budget);
+            assertTrue(names.length() <= budget, budget + ": " + names.length());
+            assertTrue(names.startsWith("player_0, player_1"));
+            assertTrue(names.matches(".*…他\\d+人$"), names);
+        }
+        assertEquals("a, b", JoinQuitAggregator.names(List.of("a", "b"), 100));
+    }
+}
@@ -0,0 +1,74 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    @Test
+    void bucketUpperBoundsCoverTheirValues() {
+        long[] samples = {0, 1, 127, 128, 129, 255, 256, 1_000, 65_535, 1_000_000, 123_456_789, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        int last = -1;
+        for (long v : samples) {
+            int i = LatencyHistogram.index(v);
+            assertTrue(i >= last, "index not monotonic at " + v);
+            last = i;
+            long upper = LatencyHistogram.valueAt(i);
+            assertTrue(upper >= v, v + " above its bucket's upper bound " + upper);
+            assertTrue(upper - v <= Math.max(0, v / 64), v + " bucket too wide: " + upper);
+        }
+    }
+
+    // 記録の範囲全体で、パーセンタイルの相対誤差は 1/64（約 1.6%）以内
+    @Test
+    void percentilesStayWithinTheRelativeError() {
+        LatencyHistogram h = new LatencyHistogram();
+        List<Long> values = new ArrayList<>();
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        for (int i = 0; i < 100_000; i++) {
+            long v = (long) Math.exp(r.nextDouble(Math.log(1_000), Math.log(10_000_000_000L))); // 1µs〜10s
+            values.add(v);
+            h.record(v);
+        }
+        values.sort(null);
+        for (double q : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            long exact = values.get((int) Math.ceil(q * values.size()) - 1);
+            long got = h.percentileNanos(q);
+            assertTrue(got >= exact && got - exact <= exact / 64 + 1, "p" + q + ": exact=" + exact + " got=" + got);
+        }
+        assertEquals((long) values.get(values.size() - 1), h.maxNanos());
+        assertEquals(100_000, h.count());
+    }
+
+    @Test
+    void emptyAndNegativeRecords() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentileNanos(0.99));
+        h.record(-5);
+        assertEquals(1, h.count());
+        assertEquals(0, h.maxNanos());
+        assertEquals(0, h.percentileNanos(0.5));
+    }
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyHistogram h = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread th = new Thread(() -> {
+                for (int i = 1; i <= 10_000; i++) h.record(i);
+            });
+            th.start();
+            threads.add(th);
+        }
+        for (Thread th : threads) th.join();
+        assertEquals(80_000, h.count());
+        assertEquals(8L * 10_000 * 10_001 / 2, h.sumNanos());
+        assertEquals(10_000, h.maxNanos());
+    }
+}
@@ -0,0 +1,22 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MessageTemplatesTest {
+    // 状態通知は %player% / %message% を渡さないので、使われていても "null" と出してはいけない
+    @Test
+    void placeholdersWithoutAValueRenderEmpty() {
+        MessageTemplates.Template t = MessageTemplates.compile("[%server%]%player% 起動 %message%%players%");
+        assertEquals("[lobby] 起動 ", t.render("lobby", null, null));
+    }
+
+    @Test
+    void statusPayloadNeverContainsNull() {
+        MessageTemplates.Settings s = new MessageTemplates.Settings();
+        s.statusUp = "%player%が%server%を起動しました";
+        MessageTemplates m = new MessageTemplates(s);
+        assertEquals("がlobbyを起動しました", m.statusUp.render("lobby", null, null));
+    }
+}
@@ -0,0 +1,120 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutboundSpoolTest {
+    private static final Logger LOGGER = Logger.getLogger("test");
+    private static final int SEGMENT = 64 * 1024; // 下限
+
+    @TempDir
+    Path dir;
+
+    private OutboundSpool spool(long maxBytes) {
+        return new OutboundSpool(dir, SEGMENT, maxBytes, LOGGER);
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.filter(p -> p.getFileName().toString().startsWith("seg-")).count();
+        }
+    }
+
+    // close() を呼ばずに捨てる（プロセスの強制終了と同じ）と、未 ACK 分だけが順番どおりに戻る
+    @Test
+    void unackedEntriesSurviveACrash() throws IOException {
+        OutboundSpool s = spool(SEGMENT * 4L);
+        assertTrue(s.open().isEmpty());
+        long a = s.append(WebhookSenderPool.Lane.CHAT, "{\"content\":\"a\"}");
+        long b = s.append(WebhookSenderPool.Lane.STATUS, "{\"content\":\"b\"}");
+        long c = s.append(WebhookSenderPool.Lane.JOIN_QUIT, "{\"content\":\"c\"}");
+        s.ack(b);
+
+        OutboundSpool after = spool(SEGMENT * 4L);
+        List<OutboundSpool.Entry> recovered = after.open();
+        assertEquals(List.of(new OutboundSpool.Entry(a, WebhookSenderPool.Lane.CHAT, "{\"content\":\"a\"}"),
+                new OutboundSpool.Entry(c, WebhookSenderPool.Lane.JOIN_QUIT, "{\"content\":\"c\"}")), recovered);
+        assertEquals(2, after.pending());
+        assertTrue(after.append(WebhookSenderPool.Lane.CHAT, "{}") > c, "sequence numbers restarted");
+        after.close();
+    }
+
+    @Test
+    void ackedEntriesStayAckedAcrossRestarts() throws IOException {
+        OutboundSpool s = spool(SEGMENT * 4L);
+        s.open();
+        long a = s.append(WebhookSenderPool.Lane.CHAT, "{}");
+        s.close();
+
+        OutboundSpool second = spool(SEGMENT * 4L);
+        assertEquals(1, second.open().size());
+        second.ack(a);
+        second.close();
+
+        OutboundSpool third = spool(SEGMENT * 4L);
+        assertTrue(third.open().isEmpty());
+        third.close();
+    }
+
+    // セグメントをまたいで書き、すべて ACK したら書き込み中の 1 本だけが残る
+    @Test
+    void fullyAckedSegmentsAreDeleted() throws IOException {
+        OutboundSpool s = spool(SEGMENT * 16L);
+        s.open();
+        String json = "{\"content\":\"" + "x".repeat(1000) + "\"}";
+        List<Long> seqs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) seqs.add(s.append(WebhookSenderPool.Lane.CHAT, json));
+        assertTrue(segmentFiles() >= 3, "did not roll: " + segmentFiles());
+
+        for (int i = 0; i < 100; i++) s.ack(seqs.get(i));
+        long half = segmentFiles();
+        assertTrue(half < 4 && half >= 2, "head segments not compacted: " + half);
+
+        for (int i = 100; i < 200; i++) s.ack(seqs.get(i));
+        assertEquals(0, s.pending());
+        assertEquals(1, segmentFiles());
+        assertEquals(SEGMENT, s.diskBytes());
+        s.close();
+    }
+
+    @Test
+    void sizeCapDropsTheOldestUnsentMessages() throws IOException {
+        OutboundSpool s = spool(SEGMENT * 2L);
+        s.open();
+        String json = "{\"content\":\"" + "x".repeat(1000) + "\"}";
+        for (int i = 0; i < 200; i++) s.append(WebhookSenderPool.Lane.CHAT, json);
+        assertTrue(s.droppedByCap() > 0);
+        assertTrue(segmentFiles() <= 2);
+        assertEquals(200 - s.droppedByCap(), s.pending());
+        s.close();
+    }
+
+    // 閉じた後に遅れて届いた append / ack は新しいセグメントを作らない
+    @Test
+    void appendAndAckAfterCloseAreNoOps() throws IOException {
+        OutboundSpool s = spool(SEGMENT * 4L);
+        s.open();
+        long a = s.append(WebhookSenderPool.Lane.CHAT, "{}");
+        s.close();
+        long files = segmentFiles();
+
+        assertEquals(-1, s.append(WebhookSenderPool.Lane.CHAT, "{}"));
+        s.ack(a);
+        assertEquals(files, segmentFiles());
+
+        OutboundSpool after = spool(SEGMENT * 4L);
+        assertEquals(1, after.open().size()); // 閉じた後の ACK は記録されず、次の起動で送り直す
+        after.close();
+    }
+}
@@ -0,0 +1,75 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlainSenderTest {
+    private static final Logger LOGGER = Logger.getLogger("test");
+
+    // 送信中に溜まった行は 2000 文字に収まるだけ 1 通にまとめ、順序を保つ
+    @Test
+    void queuedLinesAreCoalescedPerChannel() throws InterruptedException {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        PlainSender s = new PlainSender((ch, content) -> {
+            sent.add(ch + ":" + content);
+            return sent.size() == 1 ? first : CompletableFuture.completedFuture(null);
+        }, Runnable::run, 100, LOGGER);
+        s.submit("c1", "one");
+        s.submit("c1", "two");
+        s.submit("c1", "three");
+        assertEquals(List.of("c1:one"), sent);
+        first.complete(null);
+        assertTrue(s.awaitDrain(1000));
+        assertEquals(List.of("c1:one", "c1:two\nthree"), sent);
+        assertEquals(2, s.requests());
+    }
+
+    // プールが仕事を受け付けなくなっても、送信中のまま止まらずに残りを送り切る
+    @Test
+    void rejectedPumpStillDrains() throws InterruptedException {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        PlainSender s = new PlainSender((ch, content) -> {
+            sent.add(content);
+            return sent.size() == 1 ? first : CompletableFuture.completedFuture(null);
+        }, r -> {
+            throw new RejectedExecutionException("shut down");
+        }, 100, LOGGER);
+        s.submit("c1", "one");
+        s.submit("c1", "two");
+        first.complete(null);
+        assertTrue(s.awaitDrain(1000));
+        assertEquals(List.of("one", "two"), sent);
+    }
+
+    // 再接続の間に預かる送信待ちは順番どおりに取り出され、送信中の 1 件は残る
+    @Test
+    void takeQueuedHandsBackWaitingLines() throws InterruptedException {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> first = new CompletableFuture<>();
+        PlainSender s = new PlainSender((ch, content) -> {
+            sent.add(content);
+            return first;
+        }, Runnable::run, 100, LOGGER);
+        s.submit("c1", "one");
+        s.submit("c1", "two");
+        s.submit("c2", "x");
+        s.submit("c1", "three");
+        List<PlainSender.Line> taken = s.takeQueued();
+        assertEquals(List.of(new PlainSender.Line("c1", "two"), new PlainSender.Line("c1", "three")),
+                taken.stream().filter(l -> l.channelId().equals("c1")).toList());
+        assertEquals(0, s.queueDepth());
+        first.complete(null);
+        assertTrue(s.awaitDrain(1000));
+        assertEquals(List.of("one", "x"), sent);
+    }
+}
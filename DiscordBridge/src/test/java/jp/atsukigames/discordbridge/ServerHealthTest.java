@@ -0,0 +1,104 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServerHealthTest {
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 200;
+
+    // 全スレッドを揃えてから一斉に body を走らせる
+    private static void race(Runnable body) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Thread t = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                body.run();
+            });
+            t.start();
+            threads.add(t);
+        }
+        ready.await();
+        go.countDown();
+        for (Thread t : threads) t.join();
+    }
+
+    @Test
+    void concurrentFailuresReportOneDown() throws InterruptedException {
+        for (int round = 0; round < ROUNDS; round++) {
+            ServerHealth h = new ServerHealth();
+            h.seed(h.nextGeneration(), true);
+            AtomicInteger downs = new AtomicInteger();
+            AtomicInteger others = new AtomicInteger();
+            race(() -> {
+                ServerHealth.Transition t = h.apply(h.nextGeneration(), false, 2, 1);
+                if (t == ServerHealth.Transition.DOWN) downs.incrementAndGet();
+                else if (t != ServerHealth.Transition.NONE && t != ServerHealth.Transition.STALE) others.incrementAndGet();
+            });
+            assertEquals(1, downs.get(), "round " + round);
+            assertEquals(0, others.get());
+            assertEquals(Boolean.FALSE, h.state().online());
+        }
+    }
+
+    @Test
+    void concurrentSuccessesReportOneUp() throws InterruptedException {
+        for (int round = 0; round < ROUNDS; round++) {
+            ServerHealth h = new ServerHealth();
+            AtomicInteger ups = new AtomicInteger();
+            race(() -> {
+                if (h.apply(h.nextGeneration(), true, 2, 1) == ServerHealth.Transition.UP) ups.incrementAndGet();
+            });
+            assertEquals(1, ups.get(), "round " + round);
+            assertEquals(Boolean.TRUE, h.state().online());
+        }
+    }
+
+    // 成功と失敗が入り乱れても、報告される遷移は交互にしか起こり得ない（UP・DOWN の回数差は最終状態と一致）
+    @Test
+    void mixedResultsNeverDuplicateATransition() throws InterruptedException {
+        ServerHealth h = new ServerHealth();
+        h.seed(h.nextGeneration(), true);
+        AtomicInteger ups = new AtomicInteger();
+        AtomicInteger downs = new AtomicInteger();
+        race(() -> {
+            for (int i = 0; i < 5000; i++) {
+                boolean isUp = ThreadLocalRandom.current().nextBoolean();
+                switch (h.apply(h.nextGeneration(), isUp, 2, 1)) {
+                    case UP -> ups.incrementAndGet();
+                    case DOWN -> downs.incrementAndGet();
+                    default -> {}
+                }
+            }
+        });
+        int diff = downs.get() - ups.get();
+        assertTrue(diff == 0 || diff == 1, "ups=" + ups + " downs=" + downs);
+        assertEquals(diff == 0, h.state().online());
+        assertTrue(ups.get() > 0, "no contention exercised");
+    }
+
+    @Test
+    void lateResultsAreStale() {
+        ServerHealth h = new ServerHealth();
+        long old = h.nextGeneration();
+        long fresh = h.nextGeneration();
+        assertEquals(ServerHealth.Transition.UP, h.apply(fresh, true, 2, 1));
+        assertEquals(ServerHealth.Transition.STALE, h.apply(old, false, 2, 1));
+        assertEquals(Boolean.TRUE, h.state().online());
+    }
+}
@@ -0,0 +1,18 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SlashCommandsTest {
+    // "_" を含む名前が斜体にならないよう、チャットと同じ無害化を通す
+    @Test
+    void onlinePlayerNamesAreEscaped() {
+        SlashCommands.View v = new SlashCommands.View(0, 3,
+                List.of(new SlashCommands.ServerView("lobby", true, 5L, List.of("_steve_", "alex"))), List.of("__bob"));
+        String text = SlashCommands.online(v, new TextSanitizer(new TextSanitizer.Settings()));
+        assertEquals("**オンライン 3人**\n**lobby** (2): \\_steve\\_, alex\n接続中 (1): \\_\\_bob", text);
+    }
+}
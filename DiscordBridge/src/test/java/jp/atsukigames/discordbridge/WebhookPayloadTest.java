@@ -0,0 +1,24 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WebhookPayloadTest {
+    // "discord" / "clyde" を含む username は Discord が拒否する
+    @Test
+    void linkedNamesDropReservedWords() {
+        assertEquals("Steve", PlayerProfileCache.webhookSafe("Steve"));
+        assertEquals("fan", PlayerProfileCache.webhookSafe("Discord fan"));
+        assertEquals("bot", PlayerProfileCache.webhookSafe("CLYDEbot"));
+        assertEquals("", PlayerProfileCache.webhookSafe("disclydecord"));
+    }
+
+    @Test
+    void usernameIsCappedAt80Characters() {
+        assertEquals(WebhookPayload.MAX_USERNAME, WebhookPayload.content("a".repeat(200), "x").username().length());
+        assertEquals("short", WebhookPayload.content("short", "x").username());
+        String emoji = "a".repeat(WebhookPayload.MAX_USERNAME - 1) + "😀"; // 80 文字目が絵文字の前半
+        assertEquals("a".repeat(WebhookPayload.MAX_USERNAME - 1), WebhookPayload.content(emoji, "x").username());
+    }
+}
@@ -0,0 +1,184 @@
+package jp.atsukigames.discordbridge;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WebhookSenderPoolTest {
+    private static final Logger LOGGER = Logger.getLogger("test");
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private final ExecutorService io = Executors.newCachedThreadPool();
+    private final List<String> delivered = new CopyOnWriteArrayList<>(); // 2xx で受け付けた本文
+
+    @AfterEach
+    void close() {
+        scheduler.shutdownNow();
+        io.shutdownNow();
+    }
+
+    private static WebhookTransport.Response ok() {
+        return new WebhookTransport.Response(204, Map.of(), "");
+    }
+
+    private WebhookSenderPool pool(WebhookTransport transport) {
+        return new WebhookSenderPool(List.of("https://example.invalid/api/webhooks/1/a"), Map.of(), transport, scheduler, LOGGER, null);
+    }
+
+    private static WebhookPayload text(String s) {
+        return WebhookPayload.content("u", s);
+    }
+
+    private boolean sent(String s) {
+        return delivered.stream().anyMatch(b -> b.contains("\"" + s + "\""));
+    }
+
+    @Test
+    void retryingChatDoesNotHoldBackStatus() throws Exception {
+        AtomicInteger chatFailures = new AtomicInteger();
+        WebhookSenderPool pool = pool((method, url, json) -> {
+            if (json.contains("\"chat-1\"") && chatFailures.getAndIncrement() == 0) {
+                return CompletableFuture.completedFuture(new WebhookTransport.Response(503, Map.of(), ""));
+            }
+            delivered.add(json);
+            return CompletableFuture.completedFuture(ok());
+        });
+
+        CompletableFuture<Void> chat1 = pool.send(WebhookSenderPool.Lane.CHAT, text("chat-1"));
+        CompletableFuture<Void> chat2 = pool.send(WebhookSenderPool.Lane.CHAT, text("chat-2"));
+        long start = System.nanoTime();
+        pool.send(WebhookSenderPool.Lane.STATUS, text("status")).get(5, TimeUnit.SECONDS);
+        long statusMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(statusMs < 400, "status waited for the chat retry: " + statusMs + "ms");
+        assertTrue(!sent("chat-1") && !sent("chat-2"), "chat-2 overtook the retrying chat-1");
+
+        chat1.get(5, TimeUnit.SECONDS);
+        chat2.get(5, TimeUnit.SECONDS);
+        assertEquals(3, delivered.size());
+        assertTrue(delivered.get(1).contains("chat-1") && delivered.get(2).contains("chat-2"), "lane order lost: " + delivered);
+        assertTrue(pool.awaitDrain(1000));
+    }
+
+    @Test
+    void clientErrorsFailWithoutRetry() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        WebhookSenderPool pool = pool((method, url, json) -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(new WebhookTransport.Response(400, Map.of(), "bad"));
+        });
+        CompletableFuture<Void> f = pool.send(WebhookSenderPool.Lane.CHAT, text("x"));
+        assertTrue(pool.awaitDrain(2000));
+        assertTrue(f.isCompletedExceptionally());
+        assertEquals(1, calls.get());
+        assertEquals(1, pool.failed());
+    }
+
+    @Test
+    void parallelSendsUseIdleWebhooks() throws Exception {
+        try (FakeDiscord discord = new FakeDiscord(0, 1000, 50)) {
+            WebhookSenderPool pool = new WebhookSenderPool(discord.webhookUrls(4), Map.of(), new WebhookTransport.Http(io),
+                    scheduler, LOGGER, null, true);
+            pool.send(WebhookSenderPool.Lane.CHAT, text("warmup")).get(10, TimeUnit.SECONDS); // 接続の確立を測らない
+            long start = System.nanoTime();
+            List<CompletableFuture<Void>> fs = new ArrayList<>();
+            for (int i = 0; i < 40; i++) fs.add(pool.send(WebhookSenderPool.Lane.CHAT, text("m" + i)));
+            for (CompletableFuture<Void> f : fs) f.get(10, TimeUnit.SECONDS);
+            long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            // 1 件ずつなら 40 × 50ms = 2 秒。4 本に分かれれば 0.5 秒ほど
+            assertTrue(ms < 1200, "not parallel across webhooks: " + ms + "ms");
+            assertEquals(41, discord.requests());
+            assertEquals(41, pool.sent());
+        }
+    }
+
+    @Test
+    void rateLimitedRequestsAreResentWithoutLoss() throws Exception {
+        try (FakeDiscord discord = new FakeDiscord(5, 200, 5)) {
+            WebhookSenderPool pool = new WebhookSenderPool(discord.webhookUrls(3), Map.of(), new WebhookTransport.Http(io),
+                    scheduler, LOGGER, null, true);
+            List<CompletableFuture<Void>> fs = new ArrayList<>();
+            for (int i = 0; i < 30; i++) fs.add(pool.send(WebhookSenderPool.Lane.CHAT, text("m" + i)));
+            for (CompletableFuture<Void> f : fs) f.get(20, TimeUnit.SECONDS);
+            assertEquals(30, pool.sent());
+            assertEquals(0, pool.failed());
+            assertEquals(30, discord.requests() - discord.rateLimited());
+            assertEquals(discord.rateLimited(), pool.rateLimited());
+        }
+    }
+
+    // 既定（parallel なし）では Webhook が複数あってもレーンごとに 1 件ずつ送り、順序を保つ
+    @Test
+    void defaultKeepsTheLaneOrder() throws Exception {
+        List<String> urls = List.of("https://example.invalid/a", "https://example.invalid/b", "https://example.invalid/c");
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        WebhookTransport slow = (method, url, json) -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            CompletableFuture<WebhookTransport.Response> f = new CompletableFuture<>();
+            scheduler.schedule(() -> {
+                concurrent.decrementAndGet();
+                delivered.add(json);
+                f.complete(ok());
+            }, ThreadLocalRandom.current().nextInt(1, 10), TimeUnit.MILLISECONDS);
+            return f;
+        };
+        WebhookSenderPool pool = new WebhookSenderPool(urls, Map.of(), slow, scheduler, LOGGER, null);
+        for (int i = 0; i < 30; i++) pool.send(WebhookSenderPool.Lane.CHAT, text("m" + i));
+        for (int i = 0; i < 5; i++) pool.send(WebhookSenderPool.Lane.JOIN_QUIT, text("j" + i));
+        assertTrue(pool.awaitDrain(10_000));
+
+        List<String> chat = delivered.stream().filter(b -> b.contains("\"m")).toList();
+        for (int i = 0; i < 30; i++) assertTrue(chat.get(i).contains("\"m" + i + "\""), "out of order at " + i + ": " + chat);
+        assertTrue(maxConcurrent.get() <= 2, "more than one request per lane: " + maxConcurrent.get());
+    }
+
+    // 再送を諦めたスプール分は起動を待たず、送信が通るようになった時点で送り直す
+    @Test
+    void givenUpSpoolEntriesAreResentWhenTheWebhookRecovers(@TempDir Path dir) throws Exception {
+        AtomicBoolean up = new AtomicBoolean();
+        OutboundSpool spool = new OutboundSpool(dir, 64 * 1024, 1024 * 1024, LOGGER);
+        spool.open();
+        WebhookSenderPool pool = new WebhookSenderPool(List.of("https://example.invalid/api/webhooks/1/a"), Map.of(), (method, url, json) -> {
+            if (!up.get()) return CompletableFuture.failedFuture(new IOException("connection refused"));
+            delivered.add(json);
+            return CompletableFuture.completedFuture(ok());
+        }, scheduler, LOGGER, spool);
+        pool.retryBaseMs = 1;
+        pool.retryMaxMs = 2;
+
+        pool.send(WebhookSenderPool.Lane.CHAT, text("old"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.parked() == 0 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals(1, pool.parked());
+        assertEquals(1, spool.pending());
+
+        up.set(true);
+        pool.send(WebhookSenderPool.Lane.CHAT, text("new")).get(5, TimeUnit.SECONDS);
+        assertTrue(pool.awaitDrain(5000));
+        assertEquals(2, delivered.size());
+        assertTrue(sent("old") && sent("new"));
+        assertEquals(0, pool.parked());
+        assertEquals(0, spool.pending());
+        spool.close();
+    }
+}